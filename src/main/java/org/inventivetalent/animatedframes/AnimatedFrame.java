@@ -34,25 +34,24 @@ import com.google.gson.annotations.Expose;
 import lombok.Data;
 import lombok.ToString;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
-import org.bukkit.metadata.FixedMetadataValue;
 import org.inventivetalent.animatedframes.clickable.ClickEvent;
 import org.inventivetalent.animatedframes.clickable.Clickable;
 import org.inventivetalent.animatedframes.clickable.CursorPosition;
 import org.inventivetalent.animatedframes.decoder.GifDecoder;
+import org.inventivetalent.animatedframes.playback.FrameTimeline;
+import org.inventivetalent.animatedframes.playback.PacketBudget;
+import org.inventivetalent.animatedframes.playback.PlaybackStats;
+import org.inventivetalent.animatedframes.playback.PlaybackTask;
 import org.inventivetalent.frameutil.BaseFrameMapAbstract;
 import org.inventivetalent.mapmanager.ArrayImage;
-import org.inventivetalent.mapmanager.MapManagerPlugin;
 import org.inventivetalent.mapmanager.TimingsHelper;
-import org.inventivetalent.mapmanager.controller.MapController;
-import org.inventivetalent.mapmanager.controller.MultiMapController;
-import org.inventivetalent.mapmanager.manager.MapManager;
-import org.inventivetalent.mapmanager.wrapper.MapWrapper;
-import org.inventivetalent.mapmanager.wrapper.MultiWrapper;
+import org.inventivetalent.pluginannotations.message.MessageFormatter;
 import org.inventivetalent.reflection.minecraft.Minecraft;
 import org.inventivetalent.vectors.d2.Vector2DDouble;
 import org.inventivetalent.vectors.d3.Vector3DDouble;
@@ -64,17 +63,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 @Data
 @ToString(doNotUseGetters = true,
 		  callSuper = true)
-public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Clickable {
+public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, PlaybackTask, Clickable {
 
 	static final int[][] NULL_INT_ARRAY = new int[0][0];
 
+	static final long EMPTY_SERVER_DELAY = TimeUnit.SECONDS.toNanos(2);
+	static final long GENERATION_RETRY_TICKS = 100;
+
 	@Expose private String name;
 	@Expose private String imageSource;
 
@@ -89,24 +95,43 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 
 	@Expose public Set<ClickEvent> clickEvents = new HashSet<>();
 
-	protected         int[][]      itemFrameIds = NULL_INT_ARRAY;
-	@Expose protected UUID[][]     itemFrameUUIDs;
-	private           int[]        frameDelays  = new int[0];
-	private           MapWrapper[] mapWrappers;
-
-	protected int delayTicks = 0;
+	protected         int[][]        itemFrameIds  = NULL_INT_ARRAY;
+	@Expose protected UUID[][]       itemFrameUUIDs;
+	// Locations of the item frames, 3 coordinates per tile (index x * height + y)
+	private           double[]       tilePositions = new double[0];
+	private           int[]          frameDelays   = new int[0];
+	private           TiledWrapper[] mapWrappers;
+	// Set in streaming mode, where all entries of mapWrappers are the same wrapper
+	private volatile  StreamedContent streamedContent;
 
 	private final Object    worldPlayersLock = new Object[0];
 	private       Set<UUID> worldPlayers     = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
 
-	private AnimatedFramesPlugin plugin       = (AnimatedFramesPlugin) Bukkit.getPluginManager().getPlugin("AnimatedFrames");
-	private boolean              imageLoaded  = false;
-	private boolean              playing      = false;
-	private int                  currentFrame = 0;
+	// Viewers within maxAnimateDistance, only modified by the ViewerTracker
+	private final    Map<UUID, FrameViewer> viewersInRange = new HashMap<>();
+	private volatile FrameViewer[]          inRangeViewers = new FrameViewer[0];
+	private volatile int                    visibleViewers;// Viewers in range which can currently see the frame
+
+	private          AnimatedFramesPlugin plugin       = (AnimatedFramesPlugin) Bukkit.getPluginManager().getPlugin("AnimatedFrames");
+	private volatile boolean              imageLoaded  = false;
+	private volatile boolean              playing      = false;
+	private volatile int                  currentFrame = 0;
+	// Set once the frame was removed from the FrameManager. Transient, so it's not part of equals/hashCode
+	private transient volatile boolean    removed;
 
 	public Callback<Void> startCallback;
 
-	private long timeSinceLastRefresh = 950;
+	private volatile FrameTimeline      timeline;
+	private final    PlaybackStats      playbackStats = new PlaybackStats();
+	private final    PacketBudget.Share packetShare   = new PacketBudget.Share();
+
+	private final AtomicBoolean scheduled   = new AtomicBoolean();
+	// Playback state, only accessed by the playback thread
+	private       FrameTimeline activeTimeline;
+	private       long          animationStart;
+	private       long          nextDeadline;
+	private       int           expectedFrame;
+	private volatile boolean    parked;
 
 	AnimatedFrame() {
 		super();
@@ -128,185 +153,649 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 		this.height = getBlockHeight();
 	}
 
+	/**
+	 * Loads the frame data from the cache, or downloads the image and hands the generation off to {@link AnimatedFramesPlugin#generationExecutor}
+	 * Runs on {@link AnimatedFramesPlugin#ioExecutor}
+	 */
 	@Override
 	public void run() {
 		try {
-			if (!imageLoaded) {
-				MapManager mapManager = ((MapManagerPlugin) Bukkit.getPluginManager().getPlugin("MapManager")).getMapManager();
-				try {
-					File cacheDir = new File(new File(plugin.getDataFolder(), "cache"), this.name);
-					if (!cacheDir.exists()) {
-						cacheDir.mkdirs();
-
-						plugin.getLogger().info("Generating image data for " + getName() + "...");
-
-						File file = plugin.frameManager.downloadOrGetImage(this.imageSource);
-						GifDecoder decoder = new GifDecoder();
-						decoder.read(new FileInputStream(file));
-
-						if ((this.length = decoder.getFrameCount()) <= 0) {
-							plugin.getLogger().info("Animation length for '" + getName() + "' is zero. Creating non-animated image.");
-							this.length = 1;
-
-							BufferedImage image = ImageIO.read(file);
-							if (image == null) {
-								throw new RuntimeException("Failed to read the given image. Please make sure you're using a valid source");
-							}
-							image = scaleImage(image);
-							MapWrapper mapWrapper = mapManager.wrapMultiImage(image, this.height, this.width);
-							this.frameDelays = new int[] { 500 };
-							this.mapWrappers = new MapWrapper[] { mapWrapper };
-							image.flush();
-
-							File cacheFile = new File(cacheDir, this.name + "_0.afc");
-							cacheFile.createNewFile();
-							try (FileOutputStream out = new FileOutputStream(cacheFile)) {
-								out.write(Ints.toByteArray(500));
-								ArrayImage.writeMultiToSream(((MultiWrapper) mapWrapper).getMultiContent(), out);
-							}
-						} else {
-							this.frameDelays = new int[this.length];
-							this.mapWrappers = new MapWrapper[this.length];
-							for (int i = 0; i < this.length; i++) {
-								plugin.getLogger().info("Generating Frame " + (i + 1) + "/" + this.length + " for " + getName() + "...");
-
-								BufferedImage image = scaleImage(decoder.getFrame(i));
-								int delay = decoder.getDelay(i);
-								if (delay == 0) {
-									plugin.getLogger().warning("Frame has no delay information, falling back to default (" + plugin.defaultDelay + ")");
-									delay = plugin.defaultDelay;
-								}
-								this.frameDelays[i] = delay;
-								MapWrapper wrapper = mapManager.wrapMultiImage(image, this.height, this.width);
-								this.mapWrappers[i] = wrapper;
-								image.flush();
-
-								File cacheFile = new File(cacheDir, this.name + "_" + i + ".afc");
-								cacheFile.createNewFile();
-								try (FileOutputStream out = new FileOutputStream(cacheFile)) {
-									out.write(Ints.toByteArray(delay));
-									ArrayImage.writeMultiToSream(((MultiWrapper) wrapper).getMultiContent(), out);
-								}
-							}
-						}
+			if (imageLoaded) {
+				schedulePlayback();
+				return;
+			}
+			try {
+				File cacheDir = new File(new File(plugin.getDataFolder(), "cache"), this.name);
+				if (!cacheDir.exists()) {
+					cacheDir.mkdirs();
 
-						// Reset all images
-						for (Object object : decoder.frames) {
-							((GifDecoder.GifFrame) object).image.flush();
-						}
-						decoder.frames.clear();
+					plugin.getLogger().info("Generating image data for " + getName() + "...");
 
-					} else {
-						plugin.getLogger().info("Reading " + getName() + " from cache...");
-
-						String[] fileList = cacheDir.list();
-						this.length = fileList.length;
-						this.frameDelays = new int[this.length];
-						this.mapWrappers = new MapWrapper[this.length];
-
-						for (int i = 0; i < this.length; i++) {
-							plugin.getLogger().info("Reading Frame " + (i + 1) + "/" + this.length + " of " + getName() + "...");
-
-							File cacheFile = new File(cacheDir, this.name + "_" + i + ".afc");
-							cacheFile.createNewFile();
-							try (FileInputStream in = new FileInputStream(cacheFile)) {
-								byte[] lengthBytes = new byte[4];
-								in.read(lengthBytes, 0, 4);
-								this.frameDelays[i] = Ints.fromByteArray(lengthBytes);
-
-								ArrayImage[][] images = ArrayImage.readMultiFromStream(in);
-								this.mapWrappers[i] = mapManager.wrapMultiImage(images);
-							} catch (IOException readE) {
-								throw new RuntimeException("Your cached frame data appears to be invalid. Please delete the plugins/AnimatedFrames/cache directory and restart your server", readE);
-							}
-						}
+					File file = plugin.frameManager.downloadOrGetImage(this.imageSource);
+					try {
+						plugin.generationExecutor.execute(() -> generate(file, cacheDir));
+					} catch (RejectedExecutionException e) {
+						plugin.getLogger().warning("Too many images are being generated right now, '" + getName() + "' will be generated once there is room in the queue");
+						cacheDir.delete();
+						retryLater();
+					}
+				} else {
+					if (readFromCache(cacheDir)) {
+						onLoaded();
 					}
-
-					imageLoaded = true;
-				} catch (IOException e) {
-					plugin.getLogger().log(Level.SEVERE, "Failed to load image '" + getName() + "'", e);
-					throw new RuntimeException("Failed to load image");
 				}
+			} catch (IOException e) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to load image '" + getName() + "'", e);
+				throw new RuntimeException("Failed to load image");
 			}
+		} catch (Throwable e) {
+			throw new RuntimeException("Unexpected exception in AnimatedFrame " + name, e);
+		}
+	}
 
-			while (!this.playing) {
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					plugin.getLogger().warning("playing-delay for '" + getName() + "' has been interrupted");
-					return;
-				}
+	private void retryLater() {
+		if (!plugin.isEnabled()) { return; }
+		Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
+			try {
+				plugin.ioExecutor.execute(this);
+			} catch (RejectedExecutionException ignored) {
+				// Shutting down
 			}
+		}, GENERATION_RETRY_TICKS);
+	}
 
-			if (AnimatedFramesPlugin.synchronizedStart) {
-				while (System.currentTimeMillis() < AnimatedFramesPlugin.synchronizedTime) {
-					try {
-						Thread.sleep(1);
-					} catch (InterruptedException e) {
-						plugin.getLogger().warning("synchronized start delay for '" + getName() + "' has been interrupted");
-						return;
-					}
-				}
+	/**
+	 * Decodes, scales and converts the image. Runs on {@link AnimatedFramesPlugin#generationExecutor}
+	 */
+	void generate(File file, File cacheDir) {
+		try {
+			GifDecoder decoder = new GifDecoder();
+			try (FileInputStream in = new FileInputStream(file)) {
+				decoder.read(in);
 			}
 
-			while (this.playing && this.plugin.isEnabled()) {
-				if (startCallback != null) {
-					startCallback.call(null);
-					startCallback = null;
-				}
+			if ((this.length = decoder.getFrameCount()) <= 0) {
+				plugin.getLogger().info("Animation length for '" + getName() + "' is zero. Creating non-animated image.");
+				this.length = 1;
 
-				if (timeSinceLastRefresh++ > 10000) {
-					timeSinceLastRefresh = 0;
-					refresh();
+				BufferedImage image = ImageIO.read(file);
+				if (image == null) {
+					throw new RuntimeException("Failed to read the given image. Please make sure you're using a valid source");
+				}
+				image = scaleImage(image);
+				ArrayImage[][] tiles = TiledWrapper.split(image, this.width, this.height);
+				image.flush();
+				TileStore.Reservation reservation = plugin.tileStore.tryReserve(this.width * this.height);
+				if (reservation == null) {
+					warnMapBudgetExceeded();
+					cacheDir.delete();
+					return;
 				}
-				if (delayTicks++ >= this.frameDelays[this.currentFrame]) {
-					delayTicks = 0;
-					if (Bukkit.getOnlinePlayers().isEmpty()) {
-						try {
-							Thread.sleep(2000);
-						} catch (InterruptedException e) {
-							plugin.getLogger().warning("Animation thread for " + getName() + " interrupted");
+				this.frameDelays = new int[] { 500 };
+				try {
+					this.mapWrappers = new TiledWrapper[] { TiledWrapper.wrap(plugin.tileStore, this, tiles, reservation) };
+				} finally {
+					plugin.tileStore.release(reservation);
+				}
+
+				writeToCache(new File(cacheDir, this.name + "_0.afc"), 500, tiles);
+			} else {
+				int[] delays = new int[this.length];
+				TiledWrapper[] wrappers = new TiledWrapper[this.length];
+				StreamedContent.Builder stream = isStreamed(this.length) ? new StreamedContent.Builder(this.length) : null;
+				ArrayImage[][] previousTiles = null;
+				int count = 0;
+				for (int i = 0; i < this.length; i++) {
+					if (Thread.currentThread().isInterrupted()) {
+						throw new InterruptedIOException("Generation was interrupted");
+					}
+					plugin.getLogger().info("Generating Frame " + (i + 1) + "/" + this.length + " for " + getName() + "...");
+
+					BufferedImage image = scaleImage(decoder.getFrame(i));
+					int delay = decoder.getDelay(i);
+					if (delay == 0) {
+						plugin.getLogger().warning("Frame has no delay information, falling back to default (" + plugin.defaultDelay + ")");
+						delay = plugin.defaultDelay;
+					}
+					ArrayImage[][] tiles = TiledWrapper.split(image, this.width, this.height);
+					image.flush();
+					TileStore.Reservation reservation = stream == null ? plugin.tileStore.tryReserve(this.width * this.height) : null;
+					if (stream == null && reservation == null) {
+						if (previousTiles != null) {
+							writeToCache(new File(cacheDir, this.name + "_" + (count - 1) + ".afc"), delays[count - 1], previousTiles);
+							previousTiles = null;
 						}
+						stream = downgradeToStreaming(wrappers, count, this.length);
+					}
+					if (stream != null) {
+						stream.add(tiles);
+						writeToCache(new File(cacheDir, this.name + "_" + count + ".afc"), delay, tiles);
+						delays[count++] = delay;
+						continue;
+					}
+					TiledWrapper wrapper;
+					try {
+						wrapper = TiledWrapper.wrap(plugin.tileStore, this, tiles, reservation);
+					} finally {
+						plugin.tileStore.release(reservation);
+					}
+
+					if (count > 0 && wrapper.hasSameContent(wrappers[count - 1])) {
+						// Same as the previous frame, just show that one longer
+						delays[count - 1] += delay;
 						continue;
 					}
+					// The delay of the previous frame is final now
+					if (previousTiles != null) {
+						writeToCache(new File(cacheDir, this.name + "_" + (count - 1) + ".afc"), delays[count - 1], previousTiles);
+					}
+					delays[count] = delay;
+					wrappers[count] = wrapper;
+					previousTiles = tiles;
+					count++;
+				}
+				if (previousTiles != null) {
+					writeToCache(new File(cacheDir, this.name + "_" + (count - 1) + ".afc"), delays[count - 1], previousTiles);
+				}
+				if (count < this.length) {
+					plugin.getLogger().info("Merged " + (this.length - count) + " duplicate frames of " + getName());
+				}
+				if (stream != null && !setStreamedContent(stream, wrappers, count)) {
+					return;
+				}
+				this.length = count;
+				this.frameDelays = Arrays.copyOf(delays, count);
+				this.mapWrappers = Arrays.copyOf(wrappers, count);
+			}
+
+			// Reset all images
+			for (Object object : decoder.frames) {
+				((GifDecoder.GifFrame) object).image.flush();
+			}
+			decoder.frames.clear();
 
-					displayCurrentFrame();
+			onLoaded();
+		} catch (IOException e) {
+			plugin.getLogger().log(Level.SEVERE, "Failed to load image '" + getName() + "'", e);
+			deleteCache(cacheDir);
+		} catch (Throwable e) {
+			plugin.getLogger().log(Level.SEVERE, "Unexpected exception in AnimatedFrame " + name, e);
+			deleteCache(cacheDir);
+		}
+	}
 
-					this.currentFrame++;
-					if (this.currentFrame >= this.length) { this.currentFrame = 0; }
+	/**
+	 * Writes a frame to the cache. Called on the generation thread, so the files are complete and in order once the generation is done
+	 */
+	void writeToCache(File cacheFile, int delay, ArrayImage[][] tiles) throws IOException {
+		cacheFile.createNewFile();
+		try (FileOutputStream out = new FileOutputStream(cacheFile)) {
+			out.write(Ints.toByteArray(delay));
+			ArrayImage.writeMultiToSream(tiles, out);
+		}
+	}
+
+	/**
+	 * Removes an incomplete cache, so the image is generated again the next time it is loaded
+	 */
+	void deleteCache(File cacheDir) {
+		File[] files = cacheDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		cacheDir.delete();
+	}
+
+	/**
+	 * @return <code>false</code> if the frame can't be loaded, because the map budget is exhausted
+	 */
+	boolean readFromCache(File cacheDir) throws IOException {
+		plugin.getLogger().info("Reading " + getName() + " from cache...");
+
+		String[] fileList = cacheDir.list();
+		int files = fileList.length;
+		int[] delays = new int[files];
+		TiledWrapper[] wrappers = new TiledWrapper[files];
+		StreamedContent.Builder stream = isStreamed(files) ? new StreamedContent.Builder(files) : null;
+		int count = 0;
+
+		for (int i = 0; i < files; i++) {
+			plugin.getLogger().info("Reading Frame " + (i + 1) + "/" + files + " of " + getName() + "...");
+
+			File cacheFile = new File(cacheDir, this.name + "_" + i + ".afc");
+			cacheFile.createNewFile();
+			try (FileInputStream in = new FileInputStream(cacheFile)) {
+				byte[] lengthBytes = new byte[4];
+				in.read(lengthBytes, 0, 4);
+				int delay = Ints.fromByteArray(lengthBytes);
+
+				ArrayImage[][] images = ArrayImage.readMultiFromStream(in);
+				TileStore.Reservation reservation = stream == null ? plugin.tileStore.tryReserve(this.width * this.height) : null;
+				if (stream == null && reservation == null) {
+					stream = downgradeToStreaming(wrappers, count, files);
 				}
+				if (stream != null) {
+					stream.add(images);
+					delays[count++] = delay;
+					continue;
+				}
+				TiledWrapper wrapper;
 				try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					plugin.getLogger().log(Level.WARNING, "Frame interrupted", e);
+					wrapper = TiledWrapper.wrap(plugin.tileStore, this, images, reservation);
+				} finally {
+					plugin.tileStore.release(reservation);
+				}
+				// Caches written before duplicate frames were merged may still contain them
+				if (count > 0 && wrapper.hasSameContent(wrappers[count - 1])) {
+					delays[count - 1] += delay;
+					continue;
 				}
+				delays[count] = delay;
+				wrappers[count] = wrapper;
+				count++;
+			} catch (IOException readE) {
+				throw new RuntimeException("Your cached frame data appears to be invalid. Please delete the plugins/AnimatedFrames/cache directory and restart your server", readE);
+			}
+		}
+		if (stream != null && !setStreamedContent(stream, wrappers, count)) {
+			return false;
+		}
+		this.length = count;
+		this.frameDelays = Arrays.copyOf(delays, count);
+		this.mapWrappers = Arrays.copyOf(wrappers, count);
+		return true;
+	}
+
+	/**
+	 * @return whether an animation with the amount of frames should be played in streaming mode
+	 */
+	boolean isStreamed(int frames) {
+		return plugin.streamingFrames > 0 && frames >= plugin.streamingFrames;
+	}
+
+	/**
+	 * Switch to streaming mode while loading, because the maps for all frames would exceed the map budget
+	 *
+	 * @param count amount of frames which were already loaded
+	 */
+	private StreamedContent.Builder downgradeToStreaming(TiledWrapper[] wrappers, int count, int length) {
+		StreamedContent.Builder stream = new StreamedContent.Builder(length);
+		for (int i = 0; i < count; i++) {
+			stream.add(wrappers[i].getContent());
+		}
+		plugin.tileStore.release(this, Arrays.copyOf(wrappers, count));
+		Arrays.fill(wrappers, 0, count, null);
+		plugin.getLogger().warning("Not enough maps left for all frames of " + getName() + " (mapBudget: " + plugin.tileStore.getMaxMaps() + "), switching to streaming mode");
+		return stream;
+	}
+
+	private void warnMapBudgetExceeded() {
+		plugin.getLogger().warning("Not enough maps left to show " + getName() + " (mapBudget: " + plugin.tileStore.getMaxMaps() + "), it won't be loaded");
+		Player creator = this.creator != null ? Bukkit.getPlayer(this.creator) : null;
+		if (creator != null) {
+			creator.sendMessage(Commands.MESSAGE_LOADER.getMessage("create.error.mapBudget", "create.error.mapBudget", new MessageFormatter() {
+				@Override
+				public String format(String key, String message) {
+					return String.format(message, getName());
+				}
+			}));
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if there aren't enough maps left for the stream
+	 */
+	private boolean setStreamedContent(StreamedContent.Builder stream, TiledWrapper[] wrappers, int length) {
+		TileStore.Reservation reservation = plugin.tileStore.tryReserve(this.width * this.height);
+		if (reservation == null) {
+			warnMapBudgetExceeded();
+			return false;
+		}
+		StreamedContent content;
+		try {
+			content = stream.build(plugin.tileStore, this, reservation);
+		} finally {
+			plugin.tileStore.release(reservation);
+		}
+		// Every frame is shown through the same maps, so all the per-frame logic (content sync, ledger, ...) still applies
+		Arrays.fill(wrappers, 0, length, content.getWrapper());
+		this.streamedContent = content;
+		plugin.getLogger().info("Streaming " + length + " frames of " + getName() + " through a single set of maps");
+		return true;
+	}
+
+	public boolean isStreaming() {
+		return this.streamedContent != null;
+	}
+
+	/**
+	 * @return the amount of maps used by this frame, including maps shared with other frames
+	 */
+	public int getMapCount() {
+		return plugin.tileStore.getMapCount(this.mapWrappers);
+	}
+
+	private void onLoaded() {
+		this.timeline = new FrameTimeline(this.frameDelays);
+		this.imageLoaded = true;
+		if (this.playing) {
+			schedulePlayback();
+		}
+	}
 
+	public void setPlaying(boolean playing) {
+		this.playing = playing;
+		if (playing) {
+			schedulePlayback();
+		}
+	}
+
+	void schedulePlayback() {
+		if (!this.imageLoaded || !this.playing) { return; }
+		if (!this.scheduled.compareAndSet(false, true)) { return; }// Already scheduled
+
+		long deadline = System.nanoTime();
+		if (AnimatedFramesPlugin.synchronizedStart) {
+			long startDelay = AnimatedFramesPlugin.synchronizedTime - System.currentTimeMillis();
+			if (startDelay > 0) {
+				deadline += TimeUnit.MILLISECONDS.toNanos(startDelay);
 			}
-		} catch (Throwable e) {
-			throw new RuntimeException("Unexpected exception in AnimatedFrame " + name, e);
 		}
+		if (this.parked) {
+			this.parked = false;
+			plugin.frameManager.unparkFrame(this);
+		}
+		// Continue from the current frame once the deadline is reached
+		this.nextDeadline = deadline;
+		this.activeTimeline = null;
+		plugin.playbackScheduler.schedule(this, deadline);
+	}
+
+	@Override
+	public long tick(long now) {
+		if (!this.playing || !this.plugin.isEnabled()) {
+			this.scheduled.set(false);
+			return STOP;
+		}
+		if (startCallback != null) {
+			startCallback.call(null);
+			startCallback = null;
+		}
+
+		FrameTimeline timeline = this.timeline;
+		if (timeline != this.activeTimeline) {
+			// (Re-)started or the content changed
+			this.activeTimeline = timeline;
+			this.animationStart = this.nextDeadline - timeline.offsetOf(Math.min(this.currentFrame, timeline.length() - 1));
+			this.expectedFrame = -1;
+		}
+
+		if (this.visibleViewers == 0 && plugin.parkIdleFrames) {
+			// Nobody is watching, wait for someone to come in range
+			return park();
+		}
+		if (plugin.viewerTracker.getSnapshot().isEmpty()) {
+			this.expectedFrame = -1;
+			return this.nextDeadline = now + EMPTY_SERVER_DELAY;
+		}
+
+		// Find the frame which is due right now, instead of just advancing by one, so we don't lag behind
+		long elapsed = now - this.animationStart;
+		if (elapsed >= timeline.getDuration()) {
+			long loops = elapsed / timeline.getDuration();
+			this.animationStart += loops * timeline.getDuration();
+			elapsed -= loops * timeline.getDuration();
+		} else if (elapsed < 0) {
+			elapsed = 0;
+		}
+		int frame = timeline.frameAt(elapsed);
+
+		int skipped = this.expectedFrame < 0 ? 0 : Math.floorMod(frame - this.expectedFrame, timeline.length());
+		this.playbackStats.record(now - this.nextDeadline, skipped);
+
+		this.currentFrame = frame;
+		displayCurrentFrame();
+
+		this.expectedFrame = frame + 1 >= timeline.length() ? 0 : frame + 1;
+		return this.nextDeadline = this.animationStart + timeline.offsetOf(frame + 1);
+	}
+
+	@Override
+	public void onStopped() {
+		// Allow the animation to be started again
+		this.scheduled.set(false);
+	}
+
+	private long park() {
+		this.parked = true;
+		plugin.frameManager.parkFrame(this);
+		this.scheduled.set(false);
+		if (this.visibleViewers > 0) {
+			wakeUp();// Someone came in range while parking
+		}
+		return STOP;
+	}
+
+	/**
+	 * Resume a parked animation, e.g. when a player came in range
+	 */
+	public void wakeUp() {
+		if (!this.parked || !this.playing) { return; }
+		if (!this.scheduled.compareAndSet(false, true)) { return; }
+		this.parked = false;
+		plugin.frameManager.unparkFrame(this);
+
+		// Keep the existing timeline, so the animation continues as if it was never paused
+		this.expectedFrame = -1;
+		this.nextDeadline = System.nanoTime();
+		plugin.playbackScheduler.schedule(this, this.nextDeadline);
 	}
 
 	private void displayCurrentFrame() {
-		MultiMapController controller = ((MultiMapController) this.mapWrappers[this.currentFrame].getController());
-		for (Iterator<UUID> iterator = this.worldPlayers.iterator(); iterator.hasNext(); ) {
-			OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(iterator.next());
-			Player player = offlinePlayer != null ? offlinePlayer.getPlayer() : null;
-			if (player != null) {
-				if (player.getWorld().getName().equals(worldName)) {
-					if (player.getLocation().distanceSquared(baseVector.toBukkitLocation(getWorld())) < plugin.maxAnimateDistanceSquared) {
-						controller.showInFrames(player.getPlayer(), this.itemFrameIds);
-					}
-				}
+		FrameViewer[] viewers = this.inRangeViewers;
+		if (viewers.length == 0) { return; }
+		TiledWrapper[] wrappers = this.mapWrappers;
+		if (wrappers == null || wrappers.length == 0) { return; }
+		// The content may have been replaced since the frame was picked from the timeline
+		int frame = Math.min(this.currentFrame, wrappers.length - 1);
+
+		int due = 0;
+		int suppressed = 0;
+		int culled = 0;
+		int reduced = 0;
+		for (FrameViewer viewer : viewers) {
+			viewer.setDue(false);
+			if (!viewer.isTracking()) {
+				// The client doesn't have the item frames loaded, so there's no point in updating them
+				suppressed++;
+			} else if (!viewer.isInView()) {
+				// Can't be seen right now, the current frame is sent again once the viewer turns around
+				culled++;
+			} else if (plugin.levelOfDetail && viewer.skipLevelOfDetail(frame, getLevelOfDetailInterval(viewer))) {
+				// Far away, only gets some of the frames
+				reduced++;
 			} else {
-				iterator.remove();
-				if (offlinePlayer != null) {
-					for (MapWrapper wrapper : this.mapWrappers) {
-						wrapper.getController().removeViewer(offlinePlayer);
-					}
+				viewer.setDue(true);
+				due++;
+			}
+		}
+
+		// Only update as many viewers as the packet budget allows, the others will get one of the next frames
+		int start = this.packetShare.start(due);
+		int granted = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int index = 0;
+			for (FrameViewer viewer : viewers) {
+				if (!viewer.isDue()) { continue; }
+				// Start at the rotation offset, then wrap around to the viewers before it
+				if ((index++ >= start) != (pass == 0)) { continue; }
+				if (showFrame(viewer, wrappers, frame, null, true)) {
+					granted++;
 				}
 			}
 		}
+		this.packetShare.advance(start, granted);
+		if (suppressed > 0 || culled > 0 || reduced > 0 || granted < due) {
+			this.playbackStats.recordSuppressed(suppressed, culled, reduced, due - granted);
+		}
+	}
+
+	/**
+	 * @return every how many frames the viewer should be updated, depending on its distance
+	 */
+	private int getLevelOfDetailInterval(FrameViewer viewer) {
+		double distanceSquared = ViewerTracker.distanceSquared(this, viewer.getPosition());
+		if (distanceSquared <= plugin.lodFullRateDistanceSquared) { return 1; }
+		if (distanceSquared <= plugin.lodHalfRateDistanceSquared) { return 2; }
+		return Math.max(1, plugin.lodKeyframeInterval);
+	}
+
+	/**
+	 * Called by the {@link ViewerTracker} when a viewer can see the frame (or some of its tiles) again, to replace the outdated frame on the client
+	 *
+	 * @param tiles tiles to update, or <code>null</code> for all visible tiles
+	 */
+	void resync(FrameViewer viewer, BitSet tiles) {
+		if (!this.imageLoaded || this.parked) { return; }// Parked frames display the current frame when they wake up
+		TiledWrapper[] wrappers = this.mapWrappers;
+		if (wrappers == null || wrappers.length == 0) { return; }
+		viewer.resetStreamShown();// The item frames may have been reloaded with new entity ids
+		showFrame(viewer, wrappers, Math.min(this.currentFrame, wrappers.length - 1), tiles, false);
+	}
+
+	/**
+	 * Show a frame to the viewer. If the client's connection is backed up, the frame is kept until it can be sent instead, replacing any older pending frame.
+	 * The sent tiles are taken from the packet budget. Regular playback updates are skipped if the budget is used up, other updates are charged regardless.
+	 *
+	 * @param playback whether this is a regular playback update
+	 * @return <code>false</code> if the update was skipped because of the packet budget
+	 */
+	private boolean showFrame(FrameViewer viewer, TiledWrapper[] wrappers, int frame, BitSet tiles, boolean playback) {
+		if (plugin.coalesceFrames && !viewer.isWritable()) {
+			if (viewer.setPendingFrame(frame) >= 0) {
+				this.playbackStats.recordDropped();
+			}
+			return true;
+		}
+		BitSet visibleTiles = tiles != null ? tiles : viewer.getVisibleTiles();
+		StreamedContent streamed = this.streamedContent;
+		if (streamed != null && wrappers[0] == streamed.getWrapper()) {
+			return showStreamedFrame(viewer, wrappers, streamed, Math.min(frame, streamed.getLength() - 1), visibleTiles, playback);
+		}
+		int packets = wrappers[frame].countShown(this.itemFrameIds, visibleTiles);
+		long now = System.nanoTime();
+		if (playback) {
+			if (!plugin.packetBudget.tryAcquire(this.packetShare, packets, now)) { return false; }
+		} else {
+			plugin.packetBudget.charge(this.packetShare, packets, now);
+		}
+		viewer.takePendingFrame();
+		// Also covers frames which the content sync didn't get to yet
+		plugin.packetBudget.charge(this.packetShare, sendLazyContent(viewer, wrappers, frame), now);
+		wrappers[frame].showInFrames(viewer.getPlayer(), this.itemFrameIds, visibleTiles);
+		return true;
+	}
+
+	/**
+	 * Send the changed tiles of a streamed frame to the viewer. The item frames only need to show the maps once.
+	 */
+	private boolean showStreamedFrame(FrameViewer viewer, TiledWrapper[] wrappers, StreamedContent streamed, int frame, BitSet visibleTiles, boolean playback) {
+		TiledWrapper wrapper = streamed.getWrapper();
+		boolean show = !viewer.isStreamShown();
+		int changed = streamed.countChanged(viewer, frame, visibleTiles);
+		int packets = changed + (show ? wrapper.countShown(this.itemFrameIds, visibleTiles) : 0);
+		long now = System.nanoTime();
+		if (playback) {
+			if (!plugin.packetBudget.tryAcquire(this.packetShare, packets, now)) { return false; }
+		} else {
+			plugin.packetBudget.charge(this.packetShare, packets, now);
+		}
+		viewer.takePendingFrame();
+		// Adds the viewer to the maps, the content of the first frame is then replaced by the changed tiles
+		plugin.packetBudget.charge(this.packetShare, sendLazyContent(viewer, wrappers, 0), now);
+		// Tiles of maps the viewer was just added to weren't counted yet
+		plugin.packetBudget.charge(this.packetShare, streamed.send(viewer, frame, visibleTiles) - changed, now);
+		if (show) {
+			viewer.markStreamShown();
+			wrapper.showInFrames(viewer.getPlayer(), this.itemFrameIds, visibleTiles);
+		}
+		return true;
+	}
+
+	/**
+	 * Called by the {@link ViewerTracker} to send the pending frame once the client's connection is writable again
+	 */
+	void flushPendingFrame(FrameViewer viewer) {
+		int frame = viewer.takePendingFrame();
+		TiledWrapper[] wrappers = this.mapWrappers;
+		if (frame < 0 || wrappers == null || frame >= wrappers.length) { return; }
+		showFrame(viewer, wrappers, frame, null, false);
+	}
+
+	/**
+	 * Send the contents of the frame and the next few frames to the viewer, unless they were already sent, either lazily or by the {@link ContentSync}
+	 *
+	 * @return the amount of tiles sent
+	 */
+	private int sendLazyContent(FrameViewer viewer, TiledWrapper[] wrappers, int frame) {
+		int lookahead = Math.min(Math.max(0, plugin.lazyContentLookahead), wrappers.length - 1);
+		int sent = 0;
+		for (int i = 0; i <= lookahead; i++) {
+			int next = (frame + i) % wrappers.length;
+			if (viewer.markContentSent(wrappers, next)) {
+				sent += sendContent(viewer.getPlayer(), wrappers, next) / ContentSync.MAP_BYTES;
+			}
+		}
+		return sent;
+	}
+
+	boolean isViewerInRange(UUID uuid) {
+		return this.viewersInRange.containsKey(uuid);
+	}
+
+	/**
+	 * Called by the {@link ViewerTracker} when a viewer came in range
+	 */
+	void addViewerInRange(FrameViewer viewer) {
+		this.viewersInRange.put(viewer.getUniqueId(), viewer);
+		this.inRangeViewers = this.viewersInRange.values().toArray(new FrameViewer[0]);
+		updateVisibleViewers();
+	}
+
+	/**
+	 * Called by the {@link ViewerTracker} to remove viewers which left the range
+	 *
+	 * @return <code>true</code> if there are viewers left in range
+	 */
+	boolean updateViewersInRange(ViewerTracker tracker) {
+		boolean changed = false;
+		for (Iterator<FrameViewer> iterator = this.viewersInRange.values().iterator(); iterator.hasNext(); ) {
+			if (!tracker.isStillInRange(this, iterator.next())) {
+				iterator.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			this.inRangeViewers = this.viewersInRange.values().toArray(new FrameViewer[0]);
+		}
+		updateVisibleViewers();
+		return !this.viewersInRange.isEmpty();
+	}
+
+	private void updateVisibleViewers() {
+		int visible = 0;
+		for (FrameViewer viewer : this.inRangeViewers) {
+			if (viewer.isVisible()) {
+				visible++;
+			}
+		}
+		boolean wasEmpty = this.visibleViewers == 0;
+		this.visibleViewers = visible;
+		if (wasEmpty && visible > 0) {
+			wakeUp();
+		}
 	}
 
 	public void goToFrameAndDisplay(int frame) {
@@ -340,20 +829,50 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 	}
 
 	public void addViewer(Player player) {
-		if (this.mapWrappers != null) {
-			for (MapWrapper wrapper : mapWrappers) {
-				if (wrapper == null) {
-					plugin.getLogger().warning("Null-element in MapWrapper array of " + getName());
-					continue;
-				}
-				MapController controller = wrapper.getController();
-				controller.addViewer(player);
-				controller.sendContent(player);
+		TiledWrapper[] wrappers = this.mapWrappers;
+		if (wrappers != null && !plugin.lazyContent) {// Lazy contents are sent once the frames are displayed
+			for (int i = 0; i < wrappers.length; i++) {
+				sendContent(player, wrappers, i);
 			}
 		}
+		registerViewer(player);
+	}
+
+	/**
+	 * Send the content of a single frame to the player, unless the client already has it
+	 *
+	 * @return the amount of bytes sent
+	 */
+	int sendContent(Player player, TiledWrapper[] wrappers, int frame) {
+		TiledWrapper wrapper = wrappers[frame];
+		if (wrapper == null) {
+			plugin.getLogger().warning("Null-element in MapWrapper array of " + getName());
+			return 0;
+		}
+		// The player keeps its map ids as long as it's a viewer, so the client still has the content of tiles it received before
+		return wrapper.sendContent(player, plugin.contentLedger) * ContentSync.MAP_BYTES;
+	}
+
+	/**
+	 * Show a frame to the player, without adding it as viewer
+	 */
+	void showFrame(Player player, TiledWrapper[] wrappers, int frame) {
+		if (wrappers[frame] == null) { return; }
+		wrappers[frame].showInFrames(player, this.itemFrameIds, null);
+	}
+
+	/**
+	 * Add the player as viewer, once it received the contents
+	 */
+	void registerViewer(Player player) {
 		synchronized (this.worldPlayersLock) {
 			this.worldPlayers.add(player.getUniqueId());
 		}
+		plugin.viewerTracker.invalidate();
+	}
+
+	public boolean isViewer(OfflinePlayer player) {
+		return this.worldPlayers.contains(player.getUniqueId());
 	}
 
 	public void removeViewer(OfflinePlayer player) {
@@ -363,21 +882,22 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 			empty = this.worldPlayers.isEmpty();
 		}
 		if (this.mapWrappers != null) {
-			for (MapWrapper wrapper : mapWrappers) {
+			for (TiledWrapper wrapper : mapWrappers) {
 				if (wrapper == null) {
 					plugin.getLogger().warning("Null-element in MapWrapper array of " + getName());
 					continue;
 				}
-				MapController controller = wrapper.getController();
+				wrapper.removeViewer(player, this);
 				if (empty) {
-					controller.clearViewers();
-				} else {
-					controller.removeViewer(player);
+					wrapper.clearViewers();
 				}
 			}
 		}
 	}
 
+	/**
+	 * Scans the world for the item frames of this frame. Item frames which are placed or loaded later on are registered by the {@link ItemFrameListener}
+	 */
 	public void refreshFrames() {
 		if (!plugin.isEnabled()) { return; }
 		Bukkit.getScheduler().runTask(plugin, new Runnable() {
@@ -386,14 +906,7 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 				TimingsHelper.startTiming("AnimatedFrames - [" + getName() + "] refreshItemFrames");
 
 				final World world = getWorld();
-				if (world == null || world.getPlayers().isEmpty()) {
-					itemFrameIds = NULL_INT_ARRAY;
-				} else {
-					itemFrameIds = new int[width][height];
-					itemFrameUUIDs = new UUID[width][height];
-
-					Vector2DDouble startVector = minCorner2d;
-
+				if (world != null) {
 					Collection<? extends Entity> entities;
 					if (Minecraft.VERSION.olderThan(Minecraft.Version.v1_8_R2)) {
 						entities = world.getEntitiesByClass(ItemFrame.class);
@@ -403,27 +916,7 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 					}
 					for (Entity entity : entities) {
 						if (entity instanceof ItemFrame) {
-							if (((ItemFrame) entity).getFacing() == facing.getFrameDirection()) {
-								if (boundingBox.expand(0.1).contains(new Vector3DDouble(entity.getLocation()))) {
-									for (int y1 = 0; y1 < getBlockHeight(); y1++) {
-										for (int x1 = 0; x1 < getBlockWidth(); x1++) {
-											int x = facing.isHorizontalModInverted() ? (getBlockWidth() - 1 - x1) : x1;
-											int y = facing.isVerticalModInverted() ? (getBlockHeight() - 1 - y1) : y1;
-											Vector3DDouble vector3d = facing.getPlane().to3D(startVector.add(x, y), baseVector.getX(), baseVector.getZ(), baseVector.getY());
-											if (entity.getLocation().getBlockZ() == vector3d.getZ().intValue()) {
-												if (entity.getLocation().getBlockX() == vector3d.getX().intValue()) {
-													if (entity.getLocation().getBlockY() == vector3d.getY().intValue()) {
-														itemFrameIds[x1][y1] = entity.getEntityId();
-														itemFrameUUIDs[x1][y1] = entity.getUniqueId();
-
-														entity.setMetadata("ANIMATED_FRAMES_META", new FixedMetadataValue(plugin, AnimatedFrame.this));
-													}
-												}
-											}
-										}
-									}
-								}
-							}
+							registerItemFrame((ItemFrame) entity);
 						}
 					}
 				}
@@ -432,37 +925,114 @@ public class AnimatedFrame extends BaseFrameMapAbstract implements Runnable, Cli
 		});
 	}
 
+	/**
+	 * Adds the item frame to the id grid, if it's part of this frame. Must be called on the main thread.
+	 *
+	 * @return <code>true</code> if the item frame is part of this frame
+	 */
+	boolean registerItemFrame(ItemFrame entity) {
+		if (entity.getFacing() != facing.getFrameDirection()) { return false; }
+		Location location = entity.getLocation();
+		if (!boundingBox.expand(0.1).contains(new Vector3DDouble(location))) { return false; }
+
+		if (itemFrameIds.length != width) {
+			itemFrameIds = new int[width][height];
+			tilePositions = new double[width * height * 3];
+		}
+		if (itemFrameUUIDs == null || itemFrameUUIDs.length != width) {
+			itemFrameUUIDs = new UUID[width][height];
+		}
+
+		Vector2DDouble startVector = minCorner2d;
+		for (int y1 = 0; y1 < getBlockHeight(); y1++) {
+			for (int x1 = 0; x1 < getBlockWidth(); x1++) {
+				int x = facing.isHorizontalModInverted() ? (getBlockWidth() - 1 - x1) : x1;
+				int y = facing.isVerticalModInverted() ? (getBlockHeight() - 1 - y1) : y1;
+				Vector3DDouble vector3d = facing.getPlane().to3D(startVector.add(x, y), baseVector.getX(), baseVector.getZ(), baseVector.getY());
+				if (location.getBlockZ() == vector3d.getZ().intValue() && location.getBlockX() == vector3d.getX().intValue() && location.getBlockY() == vector3d.getY().intValue()) {
+					if (itemFrameIds[x1][y1] != 0 && itemFrameIds[x1][y1] != entity.getEntityId()) {
+						plugin.frameManager.unregisterItemFrame(itemFrameIds[x1][y1]);// Replaced item frame
+					}
+					itemFrameIds[x1][y1] = entity.getEntityId();
+					itemFrameUUIDs[x1][y1] = entity.getUniqueId();
+					int tile = (x1 * height + y1) * 3;
+					tilePositions[tile] = location.getX();
+					tilePositions[tile + 1] = location.getY();
+					tilePositions[tile + 2] = location.getZ();
+					plugin.frameManager.registerItemFrame(entity.getEntityId(), this, x1, y1);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the item frame from the id grid, e.g. when it was broken or its chunk was unloaded. Must be called on the main thread.
+	 */
+	void unregisterItemFrame(FrameTile tile) {
+		if (tile.getX() < itemFrameIds.length && tile.getY() < itemFrameIds[tile.getX()].length && itemFrameIds[tile.getX()][tile.getY()] == tile.getEntityId()) {
+			itemFrameIds[tile.getX()][tile.getY()] = 0;// Keep the UUID, so it is still saved
+		}
+		plugin.frameManager.unregisterItemFrame(tile.getEntityId());
+	}
+
 	public void clearFrames() {
 		if (this.mapWrappers != null) {
-			for (MapWrapper wrapper : this.mapWrappers) {
+			for (TiledWrapper wrapper : this.mapWrappers) {
+				PositionSnapshot snapshot = plugin.viewerTracker.getSnapshot();
 				for (UUID uuid : worldPlayers) {
-					Player player = Bukkit.getPlayer(uuid);
+					PlayerSnapshot player = snapshot.get(uuid);
 					if (player != null) {
-						((MultiMapController) wrapper.getController()).clearFrames(player, this.itemFrameIds);
-					}
-				}
-				wrapper.getController().clearViewers();
-			}
-			for (int[] iA : this.itemFrameIds) {
-				for (int i : iA) {
-					ItemFrame itemFrame = MapManagerPlugin.getItemFrameById(getWorld(), i);
-					if (itemFrame != null) {
-						itemFrame.removeMetadata("ANIMATED_FRAMES_META", plugin);
+						wrapper.clearFrames(player.getPlayer(), this.itemFrameIds);
+						wrapper.removeViewer(player.getPlayer(), this);
 					}
 				}
+				wrapper.clearViewers();
 			}
 		}
+		plugin.frameManager.unregisterItemFrames(this);
 	}
 
-	protected MapWrapper[] getWrappers() {
+	protected TiledWrapper[] getWrappers() {
 		return this.mapWrappers;
 	}
 
-	protected void setContent(MapWrapper[] wrappers, int[] delays) {
+	protected void setContent(TiledWrapper[] wrappers, int[] delays) {
+		plugin.tileStore.retain(this, wrappers);
+		this.streamedContent = null;
+		TiledWrapper[] previous = this.mapWrappers;
 		this.length = wrappers.length;
 		this.frameDelays = delays;
 		this.currentFrame = Math.min(this.currentFrame, this.length - 1);
+		// Playback may still pick a frame of the previous timeline, so every use of the wrappers clamps the frame index
 		this.mapWrappers = wrappers;
+		this.timeline = new FrameTimeline(delays);
+		if (previous != null && previous != wrappers) {
+			releaseContent(previous);
+		}
+	}
+
+	/**
+	 * Release the tiles of the frame, once it was removed
+	 */
+	void releaseContent() {
+		releaseContent(this.mapWrappers);
+	}
+
+	private void releaseContent(TiledWrapper[] wrappers) {
+		if (wrappers == null) { return; }
+		PositionSnapshot snapshot = plugin.viewerTracker.getSnapshot();
+		for (UUID uuid : worldPlayers) {
+			PlayerSnapshot player = snapshot.get(uuid);
+			if (player == null) { continue; }
+			for (TiledWrapper wrapper : wrappers) {
+				if (wrapper != null) {
+					wrapper.removeViewer(player.getPlayer(), this);
+				}
+			}
+		}
+		plugin.tileStore.release(this, wrappers);
 	}
 
 	@Override
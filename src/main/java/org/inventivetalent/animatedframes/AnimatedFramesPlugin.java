@@ -31,7 +31,11 @@ package org.inventivetalent.animatedframes;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.inventivetalent.animatedframes.clickable.ClickListener;
+import org.inventivetalent.animatedframes.executor.MeteredExecutor;
+import org.inventivetalent.animatedframes.executor.ThreadSupport;
 import org.inventivetalent.animatedframes.metrics.Metrics;
+import org.inventivetalent.animatedframes.playback.PacketBudget;
+import org.inventivetalent.animatedframes.playback.PlaybackScheduler;
 import org.inventivetalent.pluginannotations.PluginAnnotations;
 import org.inventivetalent.pluginannotations.config.ConfigValue;
 import org.inventivetalent.update.spiget.SpigetUpdate;
@@ -39,13 +43,19 @@ import org.inventivetalent.update.spiget.UpdateCallback;
 import org.inventivetalent.update.spiget.comparator.VersionComparator;
 
 import java.io.File;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class AnimatedFramesPlugin extends JavaPlugin {
 
 	public FrameManager frameManager;
-	public Executor     frameExecutor;
+	public MeteredExecutor   generationExecutor;
+	public MeteredExecutor   ioExecutor;
+	public PlaybackScheduler playbackScheduler;
+	public PacketBudget      packetBudget;
+	public ViewerTracker     viewerTracker;
+	public ContentLedger     contentLedger;
+	public TileStore         tileStore;
+	public ContentSync       contentSync;
 
 	public InteractListener interactListener;
 
@@ -57,9 +67,37 @@ public class AnimatedFramesPlugin extends JavaPlugin {
 	@ConfigValue(path = "doNotStartAutomatically")  boolean doNotStartAutomatically = false;
 	@ConfigValue(path = "maxAnimateDistance")       int     maxAnimateDistance      = 32;
 	@ConfigValue(path = "defaultDelay")             int     defaultDelay            = 50;
+	@ConfigValue(path = "playbackThreads")          int     playbackThreads         = 1;
+	@ConfigValue(path = "parkIdleFrames")           boolean parkIdleFrames          = true;
+	@ConfigValue(path = "virtualThreads")           boolean virtualThreads          = true;
+	@ConfigValue(path = "generatorThreads")         int     generatorThreads        = 0;
+	@ConfigValue(path = "generatorQueueSize")       int     generatorQueueSize      = 16;
+	@ConfigValue(path = "ioThreads")                int     ioThreads               = 2;
+	@ConfigValue(path = "entityTrackingRange")      int     entityTrackingRange     = -1;
+	@ConfigValue(path = "viewCulling")              boolean viewCulling             = false;
+	@ConfigValue(path = "viewCullingFov")           int     viewCullingFov          = 140;
+	@ConfigValue(path = "tileCulling")              boolean tileCulling             = false;
+	@ConfigValue(path = "resendOnWorldChange")      boolean resendOnWorldChange     = true;
+	@ConfigValue(path = "resendOnRespawn")          boolean resendOnRespawn         = false;
+	@ConfigValue(path = "syncBytesPerSecond")       int     syncBytesPerSecond      = 524288;
+	@ConfigValue(path = "syncConcurrentPlayers")    int     syncConcurrentPlayers   = 8;
+	@ConfigValue(path = "lazyContent")              boolean lazyContent             = false;
+	@ConfigValue(path = "lazyContentLookahead")     int     lazyContentLookahead    = 5;
+	@ConfigValue(path = "maxPacketsPerSecond")      int     maxPacketsPerSecond     = 0;
+	@ConfigValue(path = "coalesceFrames")           boolean coalesceFrames          = true;
+	@ConfigValue(path = "levelOfDetail")            boolean levelOfDetail           = false;
+	@ConfigValue(path = "lodFullRateDistance")      int     lodFullRateDistance     = 16;
+	@ConfigValue(path = "lodHalfRateDistance")      int     lodHalfRateDistance     = 32;
+	@ConfigValue(path = "lodKeyframeInterval")      int     lodKeyframeInterval     = 8;
+	@ConfigValue(path = "streamingFrames")          int     streamingFrames         = 0;
+	@ConfigValue(path = "mapBudget")                int     mapBudget               = 0;
 	static                                          long    synchronizedTime        = 0;
 
-	int maxAnimateDistanceSquared = 1024;
+	int    maxAnimateDistanceSquared  = 1024;
+	int    lodFullRateDistanceSquared = 256;
+	int    lodHalfRateDistanceSquared = 1024;
+	double viewCullingCos             = -1;
+	double viewCullingAngle           = Math.PI;// Half of the field of view in radians
 
 	@Override
 	public void onEnable() {
@@ -79,13 +117,37 @@ public class AnimatedFramesPlugin extends JavaPlugin {
 		PluginAnnotations.COMMAND.load(this, new Commands(this));
 
 		maxAnimateDistanceSquared = maxAnimateDistance * maxAnimateDistance;
+		lodFullRateDistanceSquared = lodFullRateDistance * lodFullRateDistance;
+		lodHalfRateDistanceSquared = lodHalfRateDistance * lodHalfRateDistance;
+		viewCullingCos = viewCullingFov > 0 && viewCullingFov < 360 ? Math.cos(Math.toRadians(viewCullingFov / 2.0D)) : -1;
+		viewCullingAngle = Math.acos(viewCullingCos);
 
 		frameManager = new FrameManager(this);
-		frameExecutor = Executors.newCachedThreadPool();
+		// CPU-bound image decoding & conversion
+		generationExecutor = MeteredExecutor.fixed("AnimatedFrames Generator", generatorThreads > 0 ? generatorThreads : Runtime.getRuntime().availableProcessors(), Math.max(1, generatorQueueSize));
+		// Downloads, cache & save files
+		if (virtualThreads && ThreadSupport.isVirtualThreadSupported()) {
+			getLogger().info("Using virtual threads for downloads & file access");
+			ioExecutor = new MeteredExecutor("AnimatedFrames I/O", ThreadSupport.newTaskExecutor("AnimatedFrames I/O", true));
+		} else {
+			ioExecutor = MeteredExecutor.fixed("AnimatedFrames I/O", Math.max(1, ioThreads), Integer.MAX_VALUE);
+		}
+		playbackScheduler = new PlaybackScheduler(playbackThreads, getLogger());
+		packetBudget = new PacketBudget(maxPacketsPerSecond);
+
+		contentLedger = new ContentLedger();
+		tileStore = new TileStore(mapBudget);
+		viewerTracker = new ViewerTracker(this);
+		Bukkit.getScheduler().runTaskTimer(this, viewerTracker, 1, 1);
+		contentSync = new ContentSync(this);
+		Bukkit.getScheduler().runTaskTimerAsynchronously(this, contentSync, 1, 1);
 
 		Bukkit.getPluginManager().registerEvents(interactListener = new InteractListener(this), this);
 		Bukkit.getPluginManager().registerEvents(new PlayerListener(this), this);
 		Bukkit.getPluginManager().registerEvents(new ClickListener(this), this);
+		ItemFrameListener itemFrameListener = new ItemFrameListener(this);
+		Bukkit.getPluginManager().registerEvents(itemFrameListener, this);
+		itemFrameListener.registerEntityEvents();
 
 		File cacheDir = new File(getDataFolder(), "cache");
 		if (!cacheDir.exists()) { cacheDir.mkdirs(); }
@@ -95,7 +157,7 @@ public class AnimatedFramesPlugin extends JavaPlugin {
 			@Override
 			public void run() {
 				getLogger().info("Loading data...");
-				frameExecutor.execute(new Runnable() {
+				ioExecutor.execute(new Runnable() {
 					@Override
 					public void run() {
 						frameManager.readFramesFromFile();
@@ -125,6 +187,19 @@ public class AnimatedFramesPlugin extends JavaPlugin {
 
 	@Override
 	public void onDisable() {
+		if (playbackScheduler != null) {
+			playbackScheduler.shutdown();
+		}
+		if (generationExecutor != null) {
+			generationExecutor.shutdown();
+		}
+		if (ioExecutor != null) {
+			// Let pending saves complete
+			if (!ioExecutor.shutdownGracefully(10, TimeUnit.SECONDS)) {
+				getLogger().warning("Timed out waiting for " + ioExecutor.getQueueDepth() + " pending file operation(s)");
+			}
+		}
+
 		//		getLogger().info("Saving " + frameManager.size() + " frames...");
 		//		frameExecutor.execute(new Runnable() {
 		//			@Override
@@ -0,0 +1,95 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reflective access to the Netty channels of players, to check whether their connection is backed up
+ */
+class ChannelAccess {
+
+	private static boolean initialized;
+	private static boolean available;
+
+	private static Method getHandle;
+	private static Field  connectionField;
+	private static Field  networkManagerField;
+	private static Field  channelField;
+	private static Method isWritable;
+
+	/**
+	 * @return the channel of the player, or <code>null</code> if it can't be accessed
+	 */
+	static Object getChannel(Player player, Logger logger) {
+		if (!initialized) {
+			initialize(player, logger);
+		}
+		if (!available) { return null; }
+		try {
+			Object connection = connectionField.get(getHandle.invoke(player));
+			if (connection == null) { return null; }
+			Object networkManager = networkManagerField.get(connection);
+			return networkManager == null ? null : channelField.get(networkManager);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether the channel can take more packets without buffering them. <code>true</code> if the channel is unknown
+	 */
+	static boolean isWritable(Object channel) {
+		if (channel == null) { return true; }
+		try {
+			return (boolean) isWritable.invoke(channel);
+		} catch (ReflectiveOperationException e) {
+			return true;
+		}
+	}
+
+	static synchronized void initialize(Player player, Logger logger) {
+		if (initialized) { return; }
+		try {
+			getHandle = player.getClass().getMethod("getHandle");
+			Object handle = getHandle.invoke(player);
+			// Field names differ between versions, so they're looked up by type
+			connectionField = findField(handle.getClass(), "PlayerConnection", "ServerGamePacketListenerImpl");
+			networkManagerField = findField(connectionField.getType(), "NetworkManager", "Connection");
+			Class<?> channelClass = Class.forName("io.netty.channel.Channel", false, handle.getClass().getClassLoader());
+			for (Class<?> clazz = networkManagerField.getType(); clazz != null && channelField == null; clazz = clazz.getSuperclass()) {
+				for (Field field : clazz.getDeclaredFields()) {
+					if (channelClass.isAssignableFrom(field.getType())) {
+						field.setAccessible(true);
+						channelField = field;
+						break;
+					}
+				}
+			}
+			if (channelField == null) { throw new NoSuchFieldException("Channel"); }
+			isWritable = channelClass.getMethod("isWritable");
+			available = true;
+		} catch (Throwable throwable) {
+			logger.log(Level.WARNING, "[AnimatedFrames] Failed to access player connections, frame updates for lagging clients won't be coalesced", throwable);
+		}
+		initialized = true;
+	}
+
+	static Field findField(Class<?> type, String... typeNames) throws NoSuchFieldException {
+		for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				for (String typeName : typeNames) {
+					if (field.getType().getSimpleName().equals(typeName)) {
+						field.setAccessible(true);
+						return field;
+					}
+				}
+			}
+		}
+		throw new NoSuchFieldException(String.join("/", typeNames) + " in " + type.getName());
+	}
+
+}
@@ -43,6 +43,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.inventivetalent.animatedframes.clickable.CursorPosition;
+import org.inventivetalent.animatedframes.executor.MeteredExecutor;
+import org.inventivetalent.animatedframes.playback.PlaybackStats;
 import org.inventivetalent.mapmanager.event.MapInteractEvent;
 import org.inventivetalent.pluginannotations.PluginAnnotations;
 import org.inventivetalent.pluginannotations.command.Command;
@@ -169,6 +171,20 @@ public class Commands {
 										sender.sendMessage(MESSAGE_LOADER.getMessage("create.setup.set.second", "create.setup.set.second"));
 										sender.sendMessage("  ");
 
+										// Even streaming needs one map per item frame, which span the flat area between the corners
+										Location first = firstFrame.getLocation();
+										Location second = secondFrame.getLocation();
+										int maps = (Math.abs(first.getBlockX() - second.getBlockX()) + 1) * (Math.abs(first.getBlockY() - second.getBlockY()) + 1) * (Math.abs(first.getBlockZ() - second.getBlockZ()) + 1);
+										if (!plugin.tileStore.hasCapacity(maps)) {
+											sender.sendMessage(MESSAGE_LOADER.getMessage("create.error.mapBudget", "create.error.mapBudget", new MessageFormatter() {
+												@Override
+												public String format(String key, String message) {
+													return String.format(message, name);
+												}
+											}));
+											return;
+										}
+
 										sender.sendMessage(MESSAGE_LOADER.getMessage("create.setup.complete", "create.setup.complete", new MessageFormatter() {
 											@Override
 											public String format(String key, String message) {
@@ -176,7 +192,7 @@ public class Commands {
 											}
 										}));
 										sender.sendMessage("  ");
-										plugin.frameExecutor.execute(new Runnable() {
+										plugin.ioExecutor.execute(new Runnable() {
 											@Override
 											public void run() {
 												sender.sendMessage(MESSAGE_LOADER.getMessage("create.setup.loading", "create.setup.loading"));
@@ -477,11 +493,78 @@ public class Commands {
 		}
 		final AnimatedFrame targetFrame = plugin.frameManager.getFrame(target);
 		final AnimatedFrame sourceFrame = plugin.frameManager.getFrame(source);
+		if (sourceFrame.isStreaming()) {
+			// The maps of a stream show a different frame for every animation, so they can't be shared
+			sender.sendMessage("Source frame is streaming, its content can't be copied");
+			return;
+		}
 
 		targetFrame.setContent(sourceFrame.getWrappers(), sourceFrame.getFrameDelays());
 	}
 
 
+	@Command(name = "framestats",
+			 aliases = {
+					 "afstats",
+					 "statsframe"
+			 },
+			 usage = "<Name>",
+			 description = "Show playback timings of a frame",
+			 min = 1,
+			 max = 1,
+			 fallbackPrefix = "animatedframes")
+	@Permission("animatedframes.stats")
+	public void frameStats(final CommandSender sender, final String name) {
+		if (!plugin.frameManager.doesFrameExist(name)) {
+			sender.sendMessage(MESSAGE_LOADER.getMessage("stats.error.notFound", "stats.error.notFound"));
+			return;
+		}
+		final AnimatedFrame frame = plugin.frameManager.getFrame(name);
+		final PlaybackStats stats = frame.getPlaybackStats();
+
+		sender.sendMessage("  ");
+		sender.sendMessage("§e" + frame.getName() + " §7(" + (frame.isImageLoaded() ? (frame.isPlaying() ? "playing" : "stopped") : "loading") + ")");
+		sender.sendMessage("§7Frames: §b" + frame.getLength() + " §7Displayed: §b" + stats.getDisplayedFrames() + " §7Skipped: §b" + stats.getSkippedFrames());
+		sender.sendMessage(String.format("§7Jitter: §b%.2fms §7average, §b%.2fms §7max", stats.getAverageJitter() / 1000000.0D, stats.getMaxJitter() / 1000000.0D));
+		sender.sendMessage("§7Updates suppressed: §b" + stats.getSuppressedPackets() + " §7untracked, §b" + stats.getCulledPackets() + " §7out of view, §b" + stats.getReducedPackets() + " §7far away, §b" + stats.getThrottledPackets() + " §7throttled");
+		sender.sendMessage("§7Stale frames dropped for lagging clients: §b" + stats.getDroppedFrames());
+		sender.sendMessage("§7Maps: §b" + frame.getMapCount() + (frame.isStreaming() ? " §7(streaming)" : ""));
+	}
+
+	@Command(name = "framestatus",
+			 aliases = {
+					 "afstatus"
+			 },
+			 usage = "",
+			 description = "Show the state of the generation, I/O & playback threads",
+			 max = 0,
+			 fallbackPrefix = "animatedframes")
+	@Permission("animatedframes.status")
+	public void frameStatus(final CommandSender sender) {
+		sender.sendMessage("  ");
+		sendExecutorStatus(sender, plugin.generationExecutor);
+		sendExecutorStatus(sender, plugin.ioExecutor);
+		sender.sendMessage("§ePlayback§7: §b" + plugin.playbackScheduler.size() + " §7scheduled on §b" + plugin.playbackScheduler.getThreadCount() + " §7thread(s), §b" + plugin.frameManager.getParkedFrames().size() + " §7parked");
+
+		long suppressed = 0;
+		long culled = 0;
+		for (AnimatedFrame frame : plugin.frameManager.getFrames()) {
+			suppressed += frame.getPlaybackStats().getSuppressedPackets();
+			culled += frame.getPlaybackStats().getCulledPackets();
+		}
+		sender.sendMessage("§eVisibility§7: §b" + suppressed + " §7updates suppressed for untracked viewers, §b" + culled + " §7out of view");
+		if (plugin.packetBudget.isLimited()) {
+			sender.sendMessage("§ePacket budget§7: §b" + plugin.packetBudget.getSentPackets() + " §7sent, §b" + plugin.packetBudget.getThrottledPackets() + " §7throttled, shared by §b" + plugin.packetBudget.getCompetitors() + " §7animation(s)");
+		}
+		sender.sendMessage("§eContent§7: §b" + plugin.contentLedger.getSkippedSends() + " §7map sends skipped for clients which already had the content");
+		sender.sendMessage("§eMaps§7: §b" + plugin.tileStore.getMapCount() + (plugin.tileStore.getMaxMaps() > 0 ? "§7/§b" + plugin.tileStore.getMaxMaps() : "") + " §7in use, §b" + plugin.tileStore.getSharedTiles() + " §7duplicate tiles shared");
+		sender.sendMessage("§eSync§7: §b" + plugin.contentSync.getActiveCount() + " §7players syncing, §b" + plugin.contentSync.getWaitingCount() + " §7waiting, §b" + (plugin.contentSync.getBytesSent() / 1024) + "KiB §7sent");
+	}
+
+	void sendExecutorStatus(CommandSender sender, MeteredExecutor executor) {
+		sender.sendMessage("§e" + executor.getName() + "§7: §b" + executor.getActiveTasks() + " §7active, §b" + executor.getQueueDepth() + " §7queued, §b" + executor.getCompletedTasks() + " §7completed, §b" + executor.getRejectedTasks() + " §7rejected");
+	}
+
 	@Command(name = "frameclickadd",
 			 aliases = {
 					 "afaddclick"
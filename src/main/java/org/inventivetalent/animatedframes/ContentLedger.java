@@ -0,0 +1,49 @@
+package org.inventivetalent.animatedframes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the map contents each client already received, so viewers can be re-added without sending all contents again
+ */
+public class ContentLedger {
+
+	private final Map<UUID, Set<TileStore.Tile>> received = new ConcurrentHashMap<>();
+	private final AtomicLong                     skipped  = new AtomicLong();
+
+	/**
+	 * @return whether the client of the player still has the content of the tile
+	 */
+	public boolean hasContent(UUID player, TileStore.Tile tile) {
+		Set<TileStore.Tile> tiles = this.received.get(player);
+		return tiles != null && tiles.contains(tile);
+	}
+
+	public void markSent(UUID player, TileStore.Tile tile) {
+		// Weak keys, so tiles released by the store can still be collected
+		this.received.computeIfAbsent(player, uuid -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()))).add(tile);
+	}
+
+	/**
+	 * Called when a content send was skipped, because the client already had the content
+	 */
+	void recordSkipped() {
+		this.skipped.incrementAndGet();
+	}
+
+	/**
+	 * Forget all contents of the player, e.g. when the client discarded its map data after changing worlds
+	 */
+	public void invalidate(UUID player) {
+		this.received.remove(player);
+	}
+
+	/**
+	 * @return amount of content sends which were skipped
+	 */
+	public long getSkippedSends() {
+		return this.skipped.get();
+	}
+
+}
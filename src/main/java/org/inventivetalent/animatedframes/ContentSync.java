@@ -0,0 +1,164 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends frame contents to players in the background, e.g. after joining.
+ * The current frame of all animations is sent first (nearest animations first), followed by the remaining frames, limited to a configurable amount of bytes per second.
+ * Players are added as viewer of an animation once they received its current frame. Frames which weren't sent yet once they're displayed are sent by the animation itself.
+ */
+public class ContentSync implements Runnable {
+
+	// Size of the content of a single map
+	static final int MAP_BYTES = 128 * 128;
+
+	private final AnimatedFramesPlugin plugin;
+
+	private final Queue<SyncJob> requests   = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean  processing = new AtomicBoolean();
+	// Only accessed while processing
+	private final Deque<SyncJob> waiting    = new ArrayDeque<>();
+	private final List<SyncJob>  active     = new ArrayList<>();
+
+	private volatile int  waitingCount;
+	private volatile int  activeCount;
+	private volatile long bytesSent;
+
+	public ContentSync(AnimatedFramesPlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Queue the contents of all frames in the player's current world. Replaces any previous sync of the player.
+	 * Must be called on the main thread.
+	 */
+	public void sync(Player player) {
+		final Location location = player.getLocation();
+		List<AnimatedFrame> frames = new ArrayList<>(plugin.frameManager.getFramesInWorld(location.getWorld().getName()));
+		frames.sort(Comparator.comparingDouble(frame -> FrameIndex.distanceSquared(frame.getBoundingBox(), location.getX(), location.getY(), location.getZ())));
+		this.requests.add(new SyncJob(player, frames.toArray(new AnimatedFrame[0])));
+	}
+
+	/**
+	 * Stop syncing contents to the player, e.g. when it left the server
+	 */
+	public void cancel(Player player) {
+		this.requests.add(new SyncJob(player, null));
+	}
+
+	@Override
+	public void run() {
+		if (!this.processing.compareAndSet(false, true)) { return; }// Previous run didn't finish yet
+		try {
+			SyncJob request;
+			while ((request = this.requests.poll()) != null) {
+				UUID uuid = request.player.getUniqueId();
+				this.waiting.removeIf(job -> job.player.getUniqueId().equals(uuid));
+				this.active.removeIf(job -> job.player.getUniqueId().equals(uuid));
+				if (request.frames != null) {
+					this.waiting.add(request);
+				}
+			}
+			while (this.active.size() < Math.max(1, plugin.syncConcurrentPlayers) && !this.waiting.isEmpty()) {
+				this.active.add(this.waiting.poll());
+			}
+
+			double budget = plugin.syncBytesPerSecond > 0 ? plugin.syncBytesPerSecond / 20.0D : Double.MAX_VALUE;
+			for (Iterator<SyncJob> iterator = this.active.iterator(); iterator.hasNext(); ) {
+				SyncJob job = iterator.next();
+				// A send may exceed the remaining allowance, which is then paid back during the next ticks
+				job.allowance = Math.min(job.allowance + budget, budget);
+				while (job.allowance > 0 && !job.isDone()) {
+					int bytes = job.step();
+					job.allowance -= bytes;
+					this.bytesSent += bytes;
+				}
+				if (job.isDone()) {
+					iterator.remove();
+				}
+			}
+			this.waitingCount = this.waiting.size();
+			this.activeCount = this.active.size();
+		} finally {
+			this.processing.set(false);
+		}
+	}
+
+	/**
+	 * @return amount of players which are currently receiving contents
+	 */
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	/**
+	 * @return amount of players waiting for their sync to start
+	 */
+	public int getWaitingCount() {
+		return waitingCount;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	final class SyncJob {
+		final Player          player;
+		final AnimatedFrame[] frames;
+
+		boolean currentFramesSent;
+		int     index;
+		int     frame;
+		double  allowance;
+
+		SyncJob(Player player, AnimatedFrame[] frames) {
+			this.player = player;
+			this.frames = frames;
+		}
+
+		boolean isDone() {
+			return this.currentFramesSent && this.index >= this.frames.length;
+		}
+
+		/**
+		 * Send the next content
+		 *
+		 * @return the amount of bytes sent
+		 */
+		int step() {
+			if (!this.currentFramesSent) {
+				// Send & show the current frame of every animation, so the player doesn't see empty maps
+				if (this.index < this.frames.length) {
+					AnimatedFrame animatedFrame = this.frames[this.index++];
+					TiledWrapper[] wrappers = animatedFrame.getWrappers();
+					if (wrappers == null || wrappers.length == 0) { return 0; }
+					int current = Math.min(animatedFrame.getCurrentFrame(), wrappers.length - 1);
+					int bytes = animatedFrame.sendContent(this.player, wrappers, current);
+					animatedFrame.showFrame(this.player, wrappers, current);
+					animatedFrame.registerViewer(this.player);
+					return bytes;
+				}
+				this.currentFramesSent = true;
+				this.index = 0;
+				this.frame = 0;
+			}
+			if (this.index >= this.frames.length) { return 0; }
+
+			// Send the remaining frames of the animation ahead of time
+			AnimatedFrame animatedFrame = this.frames[this.index];
+			TiledWrapper[] wrappers = animatedFrame.getWrappers();
+			if (wrappers == null || this.frame >= wrappers.length || plugin.lazyContent) {// Lazy contents are only sent by the animation itself
+				this.index++;
+				this.frame = 0;
+				return 0;
+			}
+			return animatedFrame.sendContent(this.player, wrappers, this.frame++);
+		}
+	}
+
+}
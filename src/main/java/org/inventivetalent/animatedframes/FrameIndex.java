@@ -0,0 +1,118 @@
+package org.inventivetalent.animatedframes;
+
+import org.inventivetalent.animatedframes.util.LongObjectMap;
+import org.inventivetalent.boundingbox.BoundingBox;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index of all frames, grouped by world and chunk.
+ * The index of a world is rebuilt whenever a frame is added or removed, so lookups never block and don't allocate.
+ */
+public class FrameIndex {
+
+	private final Map<String, WorldIndex> worlds = new ConcurrentHashMap<>();
+
+	public interface FrameVisitor {
+		void visit(AnimatedFrame frame);
+	}
+
+	synchronized void add(AnimatedFrame frame) {
+		WorldIndex index = worlds.get(frame.getWorldName());
+		Set<AnimatedFrame> frames = index != null ? new HashSet<>(index.frames) : new HashSet<>();
+		if (frames.add(frame)) {
+			worlds.put(frame.getWorldName(), new WorldIndex(frames));
+		}
+	}
+
+	synchronized void remove(AnimatedFrame frame) {
+		WorldIndex index = worlds.get(frame.getWorldName());
+		if (index == null || !index.frames.contains(frame)) { return; }
+		Set<AnimatedFrame> frames = new HashSet<>(index.frames);
+		frames.remove(frame);
+		if (frames.isEmpty()) {
+			worlds.remove(frame.getWorldName());
+		} else {
+			worlds.put(frame.getWorldName(), new WorldIndex(frames));
+		}
+	}
+
+	/**
+	 * @return unmodifiable set of all frames in the world
+	 */
+	public Set<AnimatedFrame> getFrames(String worldName) {
+		WorldIndex index = worlds.get(worldName);
+		return index != null ? index.frames : Collections.<AnimatedFrame>emptySet();
+	}
+
+	/**
+	 * Visit all frames with their bounding box within the radius around the location
+	 */
+	public void forEachNear(String worldName, double x, double y, double z, double radius, FrameVisitor visitor) {
+		WorldIndex index = worlds.get(worldName);
+		if (index == null) { return; }
+
+		int minChunkX = floor(x - radius) >> 4;
+		int minChunkZ = floor(z - radius) >> 4;
+		int maxChunkX = floor(x + radius) >> 4;
+		int maxChunkZ = floor(z + radius) >> 4;
+		double radiusSquared = radius * radius;
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+				AnimatedFrame[] frames = index.chunks.get(chunkKey(chunkX, chunkZ));
+				if (frames == null) { continue; }
+				for (AnimatedFrame frame : frames) {
+					BoundingBox box = frame.getBoundingBox();
+					// Frames spanning multiple chunks are only visited from the first chunk inside of the searched area
+					if (chunkX != Math.max(floor(box.minX) >> 4, minChunkX) || chunkZ != Math.max(floor(box.minZ) >> 4, minChunkZ)) {
+						continue;
+					}
+					if (distanceSquared(box, x, y, z) <= radiusSquared) {
+						visitor.visit(frame);
+					}
+				}
+			}
+		}
+	}
+
+	static double distanceSquared(BoundingBox box, double x, double y, double z) {
+		double dx = Math.max(0, Math.max(box.minX - x, x - box.maxX));
+		double dy = Math.max(0, Math.max(box.minY - y, y - box.maxY));
+		double dz = Math.max(0, Math.max(box.minZ - z, z - box.maxZ));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	static int floor(double d) {
+		int i = (int) d;
+		return d < i ? i - 1 : i;
+	}
+
+	static long chunkKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	static final class WorldIndex {
+		final Set<AnimatedFrame>             frames;
+		final LongObjectMap<AnimatedFrame[]> chunks;
+
+		WorldIndex(Set<AnimatedFrame> frames) {
+			this.frames = Collections.unmodifiableSet(frames);
+
+			Map<Long, List<AnimatedFrame>> chunkLists = new HashMap<>();
+			for (AnimatedFrame frame : frames) {
+				BoundingBox box = frame.getBoundingBox();
+				for (int chunkX = floor(box.minX) >> 4; chunkX <= floor(box.maxX) >> 4; chunkX++) {
+					for (int chunkZ = floor(box.minZ) >> 4; chunkZ <= floor(box.maxZ) >> 4; chunkZ++) {
+						chunkLists.computeIfAbsent(chunkKey(chunkX, chunkZ), k -> new ArrayList<>()).add(frame);
+					}
+				}
+			}
+			this.chunks = new LongObjectMap<>(chunkLists.size());
+			for (Map.Entry<Long, List<AnimatedFrame>> entry : chunkLists.entrySet()) {
+				this.chunks.put(entry.getKey(), entry.getValue().toArray(new AnimatedFrame[0]));
+			}
+		}
+	}
+
+}
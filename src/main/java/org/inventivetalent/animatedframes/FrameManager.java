@@ -32,14 +32,13 @@ import com.google.common.io.BaseEncoding;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.annotations.Expose;
-import com.google.gson.annotations.SerializedName;
 import lombok.EqualsAndHashCode;
 import lombok.Synchronized;
 import lombok.ToString;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.ItemFrame;
 import org.inventivetalent.animatedframes.event.*;
+import org.inventivetalent.animatedframes.util.IntObjectMap;
 import org.inventivetalent.mapmanager.TimingsHelper;
 import org.inventivetalent.vectors.d3.Vector3DDouble;
 
@@ -50,6 +49,7 @@ import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -66,7 +66,15 @@ public class FrameManager {
 
 	private File imageDirectory;
 
-	@Expose @SerializedName("frames") private final Map<String, AnimatedFrame> frameMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	// Replaced on every change, so readers never block and can return the views directly
+	private volatile Registry registry = Registry.EMPTY;
+
+	private final FrameIndex         frameIndex   = new FrameIndex();
+	private final Set<AnimatedFrame> parkedFrames = ConcurrentHashMap.newKeySet();
+
+	// Item frame entity id -> tile, written on the main thread but also read from packet listeners
+	private final IntObjectMap<FrameTile> itemFrames    = new IntObjectMap<>(256);
+	private final Object                  itemFrameLock = new Object();
 
 	public FrameManager(AnimatedFramesPlugin plugin) {
 		this.plugin = plugin;
@@ -84,19 +92,17 @@ public class FrameManager {
 		}
 	}
 
-	@Synchronized
 	public AnimatedFrame getFrame(String name) {
-		return frameMap.get(name);
+		return registry.byName.get(name);
 	}
 
-	@Synchronized
 	public boolean doesFrameExist(String name) {
-		return frameMap.containsKey(name);
+		return registry.byName.containsKey(name);
 	}
 
 	@Synchronized
 	public AnimatedFrame createFrame(String name, String source, ItemFrame firstFrame, ItemFrame secondFrame) {
-		if (frameMap.containsKey(name)) {
+		if (registry.byName.containsKey(name)) {
 			throw new IllegalArgumentException("Frame '" + name + "' already exists");
 		}
 		JsonObject meta = new JsonObject();
@@ -106,34 +112,103 @@ public class FrameManager {
 		source = creationEvent.getSource();
 
 		AnimatedFrame frame = new AnimatedFrame(firstFrame, new Vector3DDouble(firstFrame.getLocation().toVector()), new Vector3DDouble(secondFrame.getLocation().toVector()), name, source);
-		frameMap.put(frame.getName(), frame);
 		frame.setMeta(meta);
+		putFrame(frame);
 
 		return frame;
 	}
 
 	public void startFrame(AnimatedFrame frame) {
-		plugin.frameExecutor.execute(frame);
+		if (frame.isImageLoaded()) {
+			frame.schedulePlayback();
+		} else {
+			plugin.ioExecutor.execute(frame);
+		}
 	}
 
 	@Synchronized
-	private void addFrame(String name, AnimatedFrame frame) {
-		if (frameMap.containsKey(name)) {
-			throw new IllegalArgumentException("Frame '" + name + "' already exists");
-		}
-		frameMap.put(name, frame);
+	private void putFrame(AnimatedFrame frame) {
+		TreeMap<String, AnimatedFrame> frames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		frames.putAll(registry.byName);
+		frames.put(frame.getName(), frame);
+		registry = new Registry(frames);
+		frameIndex.add(frame);
 	}
 
 	public void stopFrame(AnimatedFrame frame) {
 		frame.setPlaying(false);
 	}
 
+	void parkFrame(AnimatedFrame frame) {
+		parkedFrames.add(frame);
+	}
+
+	void unparkFrame(AnimatedFrame frame) {
+		parkedFrames.remove(frame);
+	}
+
+	/**
+	 * @return frames which are playing, but currently have no viewers in range
+	 */
+	public Set<AnimatedFrame> getParkedFrames() {
+		return Collections.unmodifiableSet(parkedFrames);
+	}
+
+	/**
+	 * @param entityId entity id of the item frame
+	 * @return the tile the item frame belongs to, or <code>null</code> if it is not part of any frame
+	 */
+	@Synchronized("itemFrameLock")
+	public FrameTile getFrameTile(int entityId) {
+		return itemFrames.get(entityId);
+	}
+
+	public boolean isAnimatedItemFrame(int entityId) {
+		return getFrameTile(entityId) != null;
+	}
+
+	@Synchronized("itemFrameLock")
+	void registerItemFrame(int entityId, AnimatedFrame frame, int x, int y) {
+		FrameTile tile = itemFrames.get(entityId);
+		if (tile == null || !tile.matches(frame, x, y)) {
+			itemFrames.put(entityId, new FrameTile(entityId, frame, x, y));
+		}
+	}
+
+	@Synchronized("itemFrameLock")
+	FrameTile unregisterItemFrame(int entityId) {
+		return itemFrames.remove(entityId);
+	}
+
+	/**
+	 * Removes all item frames of the frame from the lookup table
+	 */
+	@Synchronized("itemFrameLock")
+	void unregisterItemFrames(AnimatedFrame frame) {
+		for (int[] column : frame.getItemFrameIds()) {
+			for (int entityId : column) {
+				FrameTile tile = itemFrames.get(entityId);
+				if (tile != null && tile.getFrame() == frame) {
+					itemFrames.remove(entityId);
+				}
+			}
+		}
+	}
+
 	@Synchronized
 	public void removeFrame(AnimatedFrame frame) {
-		if (!frameMap.containsKey(frame.getName())) {
+		if (!registry.byName.containsKey(frame.getName())) {
 			throw new IllegalArgumentException("Frame '" + frame.getName() + "' does not exists");
 		}
-		frameMap.remove(frame.getName());
+		TreeMap<String, AnimatedFrame> frames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		frames.putAll(registry.byName);
+		frames.remove(frame.getName());
+		registry = new Registry(frames);
+		frame.setRemoved(true);
+		frameIndex.remove(frame);
+		parkedFrames.remove(frame);
+		unregisterItemFrames(frame);
+		frame.releaseContent();
 
 		File imageFile = getImageFile(frame.getImageSource());
 		if (imageFile != null && imageFile.exists()) {
@@ -216,35 +291,43 @@ public class FrameManager {
 		return new File(imageDirectory, BaseEncoding.base64Url().encode(source.getBytes()));
 	}
 
-	@Synchronized
+	/**
+	 * @return unmodifiable set of all frame names
+	 */
 	public Set<String> getFrameNames() {
-		return new HashSet<>(frameMap.keySet());
+		return registry.names;
 	}
 
-	@Synchronized
+	/**
+	 * @return unmodifiable set of all frames
+	 */
 	public Set<AnimatedFrame> getFrames() {
-		return new HashSet<>(frameMap.values());
+		return registry.frames;
 	}
 
-	@Synchronized
+	/**
+	 * @return unmodifiable list of all frames, sorted by name
+	 */
 	public List<AnimatedFrame> getSortedFrames() {
-		return new ArrayList<>(frameMap.values());
+		return registry.sorted;
 	}
 
-	@Synchronized
+	/**
+	 * @return unmodifiable set of all frames in the world
+	 */
 	public Set<AnimatedFrame> getFramesInWorld(String worldName) {
-		Set<AnimatedFrame> frames = new HashSet<>();
-		for (AnimatedFrame frame : frameMap.values()) {
-			if (frame.getWorldName().equals(worldName)) {
-				frames.add(frame);
-			}
-		}
-		return frames;
+		return frameIndex.getFrames(worldName);
+	}
+
+	/**
+	 * Visit all frames in the world with their bounding box within the radius around the location
+	 */
+	public void forEachFrameNear(String worldName, double x, double y, double z, double radius, FrameIndex.FrameVisitor visitor) {
+		frameIndex.forEachNear(worldName, x, y, z, radius, visitor);
 	}
 
-	@Synchronized
 	public int size() {
-		return frameMap.size();
+		return registry.byName.size();
 	}
 
 	public void writeToFile(AnimatedFrame frame) {
@@ -339,7 +422,7 @@ public class FrameManager {
 				File file = new File(saveDirectory, URLEncoder.encode(name, "UTF-8") + ".afd");
 				try (Reader reader = new FileReader(file)) {
 					AnimatedFrame loadedFrame = GSON.fromJson(reader, AnimatedFrame.class);
-					frameMap.put(loadedFrame.getName(), loadedFrame);
+					putFrame(loadedFrame);
 					try {
 						Bukkit.getPluginManager().callEvent(new AsyncFrameLoadEvent(file, loadedFrame));
 					} catch (Throwable throwable) {
@@ -381,4 +464,20 @@ public class FrameManager {
 //		TimingsHelper.stopTiming("AnimatedFrames - readFromFile");
 	}
 
+	static final class Registry {
+		static final Registry EMPTY = new Registry(new TreeMap<String, AnimatedFrame>(String.CASE_INSENSITIVE_ORDER));
+
+		final Map<String, AnimatedFrame> byName;
+		final Set<String>                names;
+		final Set<AnimatedFrame>         frames;
+		final List<AnimatedFrame>        sorted;
+
+		Registry(TreeMap<String, AnimatedFrame> byName) {
+			this.byName = Collections.unmodifiableMap(byName);
+			this.names = Collections.unmodifiableSet(byName.keySet());
+			this.sorted = Collections.unmodifiableList(new ArrayList<>(byName.values()));
+			this.frames = Collections.unmodifiableSet(new LinkedHashSet<>(this.sorted));
+		}
+	}
+
 }
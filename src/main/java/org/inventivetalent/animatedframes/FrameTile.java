@@ -0,0 +1,27 @@
+package org.inventivetalent.animatedframes;
+
+import lombok.Getter;
+
+/**
+ * Position of an item frame inside of an {@link AnimatedFrame}
+ */
+@Getter
+public final class FrameTile {
+
+	private final int           entityId;
+	private final AnimatedFrame frame;
+	private final int           x;
+	private final int           y;
+
+	FrameTile(int entityId, AnimatedFrame frame, int x, int y) {
+		this.entityId = entityId;
+		this.frame = frame;
+		this.x = x;
+		this.y = y;
+	}
+
+	boolean matches(AnimatedFrame frame, int x, int y) {
+		return this.frame == frame && this.x == x && this.y == y;
+	}
+
+}
@@ -0,0 +1,207 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.entity.Player;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A player within animation range of a frame
+ */
+public class FrameViewer {
+
+	private final    Player         player;
+	private final    UUID           uuid;
+	private volatile PlayerSnapshot position;
+	private volatile boolean        tracking;
+	private volatile boolean        inView = true;
+	private volatile BitSet         visibleTiles;// null if all tiles are visible
+
+	// Latest frame which couldn't be sent yet, because the client's connection is backed up
+	private final AtomicInteger pendingFrame = new AtomicInteger(-1);
+	private       Object        channel;
+	private       boolean       channelResolved;
+
+	// Display state, only used by the playback thread
+	private boolean due;
+	private int     lodSkipped;
+
+	// Tiles of a streamed animation the client has, guarded by the viewer
+	private StreamedContent  streamedContent;
+	private byte[][][]       streamedTiles;
+	private volatile boolean streamShown;// Whether the item frames show the maps of a streamed animation
+
+	// Frames of which the content was sent to the viewer, if contents are sent lazily
+	private TiledWrapper[] contentWrappers;
+	private BitSet         contentSent;
+
+	FrameViewer(PlayerSnapshot position) {
+		this.player = position.getPlayer();
+		this.uuid = position.getUuid();
+		this.position = position;
+	}
+
+	public Player getPlayer() {
+		return player;
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	/**
+	 * @return the position of the viewer during the last tick
+	 */
+	public PlayerSnapshot getPosition() {
+		return position;
+	}
+
+	void setPosition(PlayerSnapshot position) {
+		this.position = position;
+	}
+
+	/**
+	 * @return whether the client of the viewer currently has the item frame entities loaded
+	 */
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	void setTracking(boolean tracking) {
+		this.tracking = tracking;
+	}
+
+	/**
+	 * @return whether the viewer is facing the front side of the frame
+	 */
+	public boolean isInView() {
+		return inView;
+	}
+
+	void setInView(boolean inView) {
+		this.inView = inView;
+	}
+
+	/**
+	 * @return the tiles of the frame within the viewer's field of view (index <code>x * height + y</code>), or <code>null</code> if all tiles are visible
+	 */
+	public BitSet getVisibleTiles() {
+		return visibleTiles;
+	}
+
+	void setVisibleTiles(BitSet visibleTiles) {
+		this.visibleTiles = visibleTiles;
+	}
+
+	/**
+	 * @return whether the viewer can currently see the frame and should receive updates
+	 */
+	public boolean isVisible() {
+		return tracking && inView;
+	}
+
+	/**
+	 * Mark the content of a frame as sent
+	 *
+	 * @return <code>false</code> if it was already marked
+	 */
+	synchronized boolean markContentSent(TiledWrapper[] wrappers, int frame) {
+		if (this.contentWrappers != wrappers) {
+			// The content of the animation changed
+			this.contentWrappers = wrappers;
+			this.contentSent = new BitSet(wrappers.length);
+		}
+		if (this.contentSent.get(frame)) { return false; }
+		this.contentSent.set(frame);
+		return true;
+	}
+
+	/**
+	 * @return whether the connection of the viewer can take more packets right now
+	 */
+	boolean isWritable() {
+		if (!this.channelResolved) {
+			this.channel = ChannelAccess.getChannel(this.player, this.player.getServer().getLogger());
+			this.channelResolved = true;
+		}
+		return ChannelAccess.isWritable(this.channel);
+	}
+
+	/**
+	 * Replace the pending frame
+	 *
+	 * @return the previous pending frame, or <code>-1</code>
+	 */
+	int setPendingFrame(int frame) {
+		return this.pendingFrame.getAndSet(frame);
+	}
+
+	boolean hasPendingFrame() {
+		return this.pendingFrame.get() >= 0;
+	}
+
+	/**
+	 * @return the pending frame, or <code>-1</code>
+	 */
+	int takePendingFrame() {
+		return this.pendingFrame.getAndSet(-1);
+	}
+
+	boolean isDue() {
+		return this.due;
+	}
+
+	void setDue(boolean due) {
+		this.due = due;
+	}
+
+	/**
+	 * @return whether the item frames show the maps of a streamed animation
+	 */
+	boolean isStreamShown() {
+		return this.streamShown;
+	}
+
+	/**
+	 * Marks the maps of a streamed animation as shown in the item frames
+	 */
+	void markStreamShown() {
+		this.streamShown = true;
+	}
+
+	/**
+	 * Called when the item frames have to show the maps again, e.g. because they were reloaded by the client
+	 */
+	void resetStreamShown() {
+		this.streamShown = false;
+	}
+
+	/**
+	 * @return the tiles of the streamed content the client received ([row][column], <code>null</code> if not sent yet). Must be synchronized on the viewer.
+	 */
+	byte[][][] getStreamedTiles(StreamedContent content) {
+		if (this.streamedContent != content) {
+			// The content of the animation changed
+			this.streamedContent = content;
+			this.streamedTiles = content.newReceivedTiles();
+		}
+		return this.streamedTiles;
+	}
+
+	/**
+	 * Checks if the frame should be skipped for this viewer. Frames which are a multiple of the interval are always shown,
+	 * other frames only if the viewer didn't get an update for the interval (i.e. frames were skipped during playback)
+	 *
+	 * @param interval every how many frames the viewer should be updated
+	 */
+	boolean skipLevelOfDetail(int frame, int interval) {
+		if (interval <= 1 || frame % interval == 0 || this.lodSkipped + 1 >= interval) {
+			this.lodSkipped = 0;
+			return false;
+		}
+		this.lodSkipped++;
+		return true;
+	}
+
+}
@@ -54,7 +54,7 @@ public class InteractListener implements Listener {
 
 	@EventHandler
 	public void on(final MapInteractEvent event) {
-		if (event.getItemFrame().hasMetadata("ANIMATED_FRAMES_META")) {
+		if (plugin.frameManager.isAnimatedItemFrame(event.getEntityID())) {
 			event.setCancelled(true);
 
 			Callback<MapInteractEvent> callback;
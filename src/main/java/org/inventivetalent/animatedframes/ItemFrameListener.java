@@ -0,0 +1,115 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Keeps the item frame ids of all frames up to date when item frames are placed, broken, loaded or unloaded
+ */
+public class ItemFrameListener implements Listener {
+
+	private final AnimatedFramesPlugin plugin;
+
+	public ItemFrameListener(AnimatedFramesPlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Registers listeners for the entity load events of newer versions, where entities are loaded separately from their chunks
+	 */
+	void registerEntityEvents() {
+		registerEntitiesEvent("org.bukkit.event.world.EntitiesLoadEvent", true);
+		registerEntitiesEvent("org.bukkit.event.world.EntitiesUnloadEvent", false);
+	}
+
+	void registerEntitiesEvent(String className, final boolean load) {
+		final Class<? extends Event> eventClass;
+		final Method getEntities;
+		try {
+			eventClass = Class.forName(className).asSubclass(Event.class);
+			getEntities = eventClass.getMethod("getEntities");
+		} catch (ReflectiveOperationException e) {
+			return;// Not available in this version
+		}
+		Bukkit.getPluginManager().registerEvent(eventClass, this, EventPriority.MONITOR, (listener, event) -> {
+			if (!eventClass.isInstance(event)) { return; }
+			try {
+				for (Object entity : (List<?>) getEntities.invoke(event)) {
+					if (entity instanceof ItemFrame) {
+						if (load) {
+							register((ItemFrame) entity);
+						} else {
+							unregister((ItemFrame) entity);
+						}
+					}
+				}
+			} catch (ReflectiveOperationException e) {
+				plugin.getLogger().log(Level.WARNING, "Failed to handle " + eventClass.getSimpleName(), e);
+			}
+		}, plugin);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR,
+				  ignoreCancelled = true)
+	public void on(HangingPlaceEvent event) {
+		if (event.getEntity() instanceof ItemFrame) {
+			register((ItemFrame) event.getEntity());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR,
+				  ignoreCancelled = true)
+	public void on(HangingBreakEvent event) {
+		if (event.getEntity() instanceof ItemFrame) {
+			unregister((ItemFrame) event.getEntity());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void on(ChunkLoadEvent event) {
+		for (Entity entity : event.getChunk().getEntities()) {
+			if (entity instanceof ItemFrame) {
+				register((ItemFrame) entity);
+			}
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR,
+				  ignoreCancelled = true)
+	public void on(ChunkUnloadEvent event) {
+		Chunk chunk = event.getChunk();
+		for (Entity entity : chunk.getEntities()) {
+			if (entity instanceof ItemFrame) {
+				unregister((ItemFrame) entity);
+			}
+		}
+	}
+
+	void register(final ItemFrame itemFrame) {
+		Location location = itemFrame.getLocation();
+		plugin.frameManager.forEachFrameNear(location.getWorld().getName(), location.getX(), location.getY(), location.getZ(), 1, frame -> frame.registerItemFrame(itemFrame));
+	}
+
+	void unregister(ItemFrame itemFrame) {
+		FrameTile tile = plugin.frameManager.getFrameTile(itemFrame.getEntityId());
+		if (tile != null) {
+			tile.getFrame().unregisterItemFrame(tile);
+		}
+	}
+
+}
@@ -30,9 +30,7 @@ package org.inventivetalent.animatedframes;
 
 import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.*;
 import org.inventivetalent.update.spiget.UpdateCallback;
 
@@ -46,11 +44,11 @@ public class PlayerListener implements Listener {
 
     @EventHandler
     public void on(final PlayerJoinEvent event) {
-        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, new Runnable() {
+        Bukkit.getScheduler().runTaskLater(plugin, new Runnable() {
             @Override
             public void run() {
-                for (AnimatedFrame frame : plugin.frameManager.getFrames()) {
-                    frame.addViewer(event.getPlayer());
+                if (event.getPlayer().isOnline()) {
+                    plugin.contentSync.sync(event.getPlayer());
                 }
             }
         }, 20);
@@ -75,61 +73,37 @@ public class PlayerListener implements Listener {
         for (AnimatedFrame frame : plugin.frameManager.getFrames()) {
             frame.removeViewer(event.getPlayer());
         }
+        plugin.contentSync.cancel(event.getPlayer());
+        plugin.contentLedger.invalidate(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
     public void on(final PlayerChangedWorldEvent event) {
+        if (plugin.resendOnWorldChange) {
+            // The client discards its map data when changing worlds
+            plugin.contentLedger.invalidate(event.getPlayer().getUniqueId());
+        }
         Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
             for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(event.getFrom().getName())) {
                 frame.removeViewer(event.getPlayer());
             }
         }, 10);
-        final String newWorld = event.getPlayer().getWorld().getName();
-        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(newWorld)) {
-                frame.addViewer(event.getPlayer());
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            if (event.getPlayer().isOnline()) {
+                plugin.contentSync.sync(event.getPlayer());
             }
         }, 40);
     }
 
-    @EventHandler
-    public void on(final PlayerTeleportEvent event) {
-        boolean update;
-        if (!event.getFrom().getWorld().getUID().equals(event.getTo().getWorld().getUID())) {
-            update = true;
-        } else {
-            double distance = event.getFrom().distanceSquared(event.getTo());
-            update = distance > 500;
-        }
-        if (update) {
-            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-                for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(event.getFrom().getWorld().getName())) {
-                    frame.removeViewer(event.getPlayer());
-                }
-            }, 10);
-            final String newWorld = event.getPlayer().getWorld().getName();
-            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-                for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(newWorld)) {
-                    frame.addViewer(event.getPlayer());
-                }
-            }, 40);
-        }
-    }
-
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void on(PlayerDeathEvent event) {
-        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(event.getEntity().getWorld().getName())) {
-                frame.removeViewer(event.getEntity());
-            }
-        }, 10);
-    }
-
     @EventHandler
     public void on(final PlayerRespawnEvent event) {
-        Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            for (AnimatedFrame frame : plugin.frameManager.getFramesInWorld(event.getPlayer().getWorld().getName())) {
-                frame.addViewer(event.getPlayer());
+        if (plugin.resendOnRespawn) {
+            plugin.contentLedger.invalidate(event.getPlayer().getUniqueId());
+        }
+        // Viewers are kept across deaths & teleports, so this only sends contents the client doesn't have yet
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            if (event.getPlayer().isOnline()) {
+                plugin.contentSync.sync(event.getPlayer());
             }
         }, 40);
     }
@@ -0,0 +1,83 @@
+package org.inventivetalent.animatedframes;
+
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Immutable position & facing of a player, captured on the main thread
+ */
+@Getter
+public final class PlayerSnapshot {
+
+	private final Player player;
+	private final UUID   uuid;
+	private final UUID   worldId;
+	private final String worldName;
+
+	private final double x;
+	private final double y;
+	private final double z;
+	private final double eyeY;
+	private final int    blockX;
+	private final int    blockY;
+	private final int    blockZ;
+
+	private final float  yaw;
+	private final float  pitch;
+	// Normalized look direction
+	private final double directionX;
+	private final double directionY;
+	private final double directionZ;
+
+	PlayerSnapshot(Player player, Location location, double eyeHeight) {
+		this.player = player;
+		this.uuid = player.getUniqueId();
+		this.worldId = location.getWorld().getUID();
+		this.worldName = location.getWorld().getName();
+
+		this.x = location.getX();
+		this.y = location.getY();
+		this.z = location.getZ();
+		this.eyeY = this.y + eyeHeight;
+		this.blockX = location.getBlockX();
+		this.blockY = location.getBlockY();
+		this.blockZ = location.getBlockZ();
+
+		this.yaw = location.getYaw();
+		this.pitch = location.getPitch();
+		double pitchRadians = Math.toRadians(this.pitch);
+		double yawRadians = Math.toRadians(this.yaw);
+		double xz = Math.cos(pitchRadians);
+		this.directionX = -xz * Math.sin(yawRadians);
+		this.directionY = -Math.sin(pitchRadians);
+		this.directionZ = xz * Math.cos(yawRadians);
+	}
+
+	/**
+	 * @return whether the location is exactly the same as this snapshot, i.e. the snapshot can be re-used
+	 */
+	boolean matches(Player player, Location location, double eyeHeight) {
+		return this.player == player
+				&& this.worldId.equals(location.getWorld().getUID())
+				&& this.x == location.getX() && this.y == location.getY() && this.z == location.getZ() && this.eyeY == location.getY() + eyeHeight
+				&& this.yaw == location.getYaw() && this.pitch == location.getPitch();
+	}
+
+	/**
+	 * @return whether the other snapshot is in the same world & block
+	 */
+	public boolean isSameBlock(PlayerSnapshot other) {
+		return other != null && this.worldId.equals(other.worldId) && this.blockX == other.blockX && this.blockY == other.blockY && this.blockZ == other.blockZ;
+	}
+
+	public double distanceSquared(double x, double y, double z) {
+		double dx = x - this.x;
+		double dy = y - this.y;
+		double dz = z - this.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.inventivetalent.animatedframes;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable positions of all online players during one server tick, published by the {@link ViewerTracker} for lock-free reads from any thread
+ */
+public final class PositionSnapshot {
+
+	static final PositionSnapshot EMPTY = new PositionSnapshot(0, new PlayerSnapshot[0]);
+
+	private final int                       tick;
+	private final PlayerSnapshot[]          players;
+	private final Map<UUID, PlayerSnapshot> playerMap;
+
+	PositionSnapshot(int tick, PlayerSnapshot[] players) {
+		this.tick = tick;
+		this.players = players;
+		Map<UUID, PlayerSnapshot> playerMap = new HashMap<>((int) (players.length / 0.75F) + 1);
+		for (PlayerSnapshot player : players) {
+			playerMap.put(player.getUuid(), player);
+		}
+		this.playerMap = Collections.unmodifiableMap(playerMap);
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the snapshot of the player, or <code>null</code> if the player was not online
+	 */
+	public PlayerSnapshot get(UUID uuid) {
+		return playerMap.get(uuid);
+	}
+
+	public PlayerSnapshot get(int index) {
+		return players[index];
+	}
+
+	public int size() {
+		return players.length;
+	}
+
+	public boolean isEmpty() {
+		return players.length == 0;
+	}
+
+}
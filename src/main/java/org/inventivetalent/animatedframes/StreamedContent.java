@@ -0,0 +1,170 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.entity.Player;
+import org.inventivetalent.mapmanager.ArrayImage;
+import org.inventivetalent.mapmanager.MapSender;
+import org.inventivetalent.mapmanager.controller.MapController;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content of an animation in streaming mode: a single set of maps, of which each viewer is sent the tiles of the frames while the animation plays.
+ * Only tiles which differ from the ones the client currently has are sent.
+ * The tiles are kept compressed and only decompressed when they are sent.
+ */
+public class StreamedContent {
+
+	private final byte[][][][] frames;// [frame][row][column] compressed tiles, unchanged tiles share the data of the previous frame
+	private final TiledWrapper wrapper;
+
+	// Last decompressed tile of each position, shared by all viewers. Guarded by the content
+	private final byte[][]       decodedData;
+	private final ArrayImage[][] decoded;
+
+	StreamedContent(byte[][][][] frames, TiledWrapper wrapper) {
+		this.frames = frames;
+		this.wrapper = wrapper;
+		this.decodedData = new byte[wrapper.getHeight()][wrapper.getWidth()][];
+		this.decoded = new ArrayImage[wrapper.getHeight()][wrapper.getWidth()];
+	}
+
+	public TiledWrapper getWrapper() {
+		return wrapper;
+	}
+
+	public int getLength() {
+		return frames.length;
+	}
+
+	/**
+	 * @return the amount of tiles {@link #send(FrameViewer, int, BitSet)} would send
+	 */
+	int countChanged(FrameViewer viewer, int frame, BitSet visibleTiles) {
+		synchronized (viewer) {
+			byte[][][] received = viewer.getStreamedTiles(this);
+			return sendChanged(viewer, received, frame, visibleTiles, false);
+		}
+	}
+
+	/**
+	 * Send the tiles of the frame which differ from the ones the client of the viewer has.
+	 * The maps themselves keep the content of the first frame, so nothing is sent to other players and tiles outside the visible tiles are sent once they come into view.
+	 *
+	 * @param visibleTiles tiles to send (index <code>x * height + y</code>), or <code>null</code> to send all tiles
+	 * @return the amount of sent tiles
+	 */
+	int send(FrameViewer viewer, int frame, BitSet visibleTiles) {
+		synchronized (viewer) {
+			byte[][][] received = viewer.getStreamedTiles(this);
+			return sendChanged(viewer, received, frame, visibleTiles, true);
+		}
+	}
+
+	private int sendChanged(FrameViewer viewer, byte[][][] received, int frame, BitSet visibleTiles, boolean send) {
+		byte[][][] tiles = this.frames[frame];
+		Player player = viewer.getPlayer();
+		int height = this.wrapper.getHeight();
+		int changed = 0;
+		for (int row = 0; row < received.length; row++) {
+			for (int column = 0; column < received[row].length; column++) {
+				if (visibleTiles != null && !visibleTiles.get(column * height + row)) { continue; }
+				byte[] data = tiles[row][column];
+				if (data == received[row][column]) { continue; }
+				// The player only has a map id once it's a viewer, which then also sends the content of the first frame
+				MapController controller = this.wrapper.getTile(column, row).getController();
+				if (!controller.isViewing(player)) { continue; }
+				if (send) {
+					MapSender.addToQueue(controller.getMapId(player), decode(row, column, data), player);
+					received[row][column] = data;
+				}
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	private synchronized ArrayImage decode(int row, int column, byte[] data) {
+		if (this.decodedData[row][column] != data) {
+			this.decoded[row][column] = decompress(data);
+			this.decodedData[row][column] = data;
+		}
+		return this.decoded[row][column];
+	}
+
+	/**
+	 * @return a new array for the tiles a client received ([row][column])
+	 */
+	byte[][][] newReceivedTiles() {
+		return new byte[this.wrapper.getHeight()][this.wrapper.getWidth()][];
+	}
+
+	static byte[] compress(ArrayImage image) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+			ArrayImage.writeMultiToSream(new ArrayImage[][] { { image } }, deflater);
+		} catch (IOException e) {
+			throw new RuntimeException(e);// Can't happen for in-memory streams
+		}
+		return out.toByteArray();
+	}
+
+	static ArrayImage decompress(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(ContentSync.MAP_BYTES + 64);
+		try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return ArrayImage.readMultiFromStream(new ByteArrayInputStream(out.toByteArray()))[0][0];
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static class Builder {
+
+		private final byte[][][][]   frames;
+		private       ArrayImage[][] first;// Tiles of the first frame, which the maps are created with
+		private       ArrayImage[][] previous;// Tiles of the previous frame
+		private       int            count;
+
+		Builder(int length) {
+			this.frames = new byte[length][][][];
+		}
+
+		/**
+		 * Add the tiles of the next frame. Tiles equal to the ones of the previous frame share their data, so they are neither kept twice nor sent again.
+		 */
+		void add(ArrayImage[][] tiles) {
+			byte[][][] data = new byte[tiles.length][][];
+			for (int row = 0; row < tiles.length; row++) {
+				data[row] = new byte[tiles[row].length][];
+				for (int column = 0; column < tiles[row].length; column++) {
+					if (this.previous != null && Arrays.equals(tiles[row][column].array, this.previous[row][column].array)) {
+						data[row][column] = this.frames[this.count - 1][row][column];
+					} else {
+						data[row][column] = compress(tiles[row][column]);
+					}
+				}
+			}
+			if (this.first == null) {
+				this.first = tiles;
+			}
+			this.previous = tiles;
+			this.frames[this.count++] = data;
+		}
+
+		StreamedContent build(TileStore store, AnimatedFrame owner, TileStore.Reservation reservation) {
+			byte[][][][] frames = this.count == this.frames.length ? this.frames : Arrays.copyOf(this.frames, this.count);
+			return new StreamedContent(frames, store.wrapUnshared(owner, this.first, reservation));
+		}
+	}
+
+}
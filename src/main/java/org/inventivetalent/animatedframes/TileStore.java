@@ -0,0 +1,287 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.inventivetalent.mapmanager.ArrayImage;
+import org.inventivetalent.mapmanager.MapManagerPlugin;
+import org.inventivetalent.mapmanager.manager.MapManager;
+import org.inventivetalent.mapmanager.wrapper.MapWrapper;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed store of all map tiles.
+ * Identical tiles share a single map (and a single copy of their data) across all frames of all animations, and are released once no animation uses them anymore.
+ */
+public class TileStore {
+
+	private final Map<Long, Tile> tiles  = new HashMap<>();// hash -> first tile with the hash
+	private final AtomicLong      shared = new AtomicLong();
+	private final int             maxMaps;
+
+	private int        maps;// Maps currently wrapped
+	private int        reserved;// Maps reserved for tiles which are about to be wrapped
+	private MapManager mapManager;
+
+	/**
+	 * @param maxMaps maximum amount of maps used by all frames, or 0 for no limit
+	 */
+	public TileStore(int maxMaps) {
+		this.maxMaps = maxMaps;
+	}
+
+	/**
+	 * Get the tile with the same content as the image, or create a new one
+	 *
+	 * @param owner       animation using the tile
+	 * @param reservation maps reserved for the frame, used if a new tile is created
+	 */
+	Tile acquire(AnimatedFrame owner, ArrayImage image, Reservation reservation) {
+		// The image holds the palette colors of the map, which is exactly what the client receives
+		long hash = hash(image.array);
+		synchronized (this) {
+			Tile first = this.tiles.get(hash);
+			for (Tile tile = first; tile != null; tile = tile.next) {
+				if (Arrays.equals(image.array, tile.wrapper.getContent().array)) {
+					tile.addOwner(owner);
+					this.shared.incrementAndGet();
+					return tile;
+				}
+			}
+			Tile tile = new Tile(hash, wrapImage(image, reservation));
+			tile.next = first;
+			tile.addOwner(owner);
+			this.tiles.put(hash, tile);
+			return tile;
+		}
+	}
+
+	/**
+	 * Wrap the images in new maps which are never shared, because their content is changed later on
+	 */
+	synchronized TiledWrapper wrapUnshared(AnimatedFrame owner, ArrayImage[][] images, Reservation reservation) {
+		Tile[][] tiles = new Tile[images.length][];
+		for (int row = 0; row < images.length; row++) {
+			tiles[row] = new Tile[images[row].length];
+			for (int column = 0; column < images[row].length; column++) {
+				Tile tile = new Tile(0, wrapImage(images[row][column], reservation));
+				tile.addOwner(owner);
+				tiles[row][column] = tile;
+			}
+		}
+		return new TiledWrapper(tiles);
+	}
+
+	/**
+	 * Add the owner to all tiles of the wrappers, e.g. when the content of an animation is copied to another one
+	 */
+	synchronized void retain(AnimatedFrame owner, TiledWrapper[] wrappers) {
+		for (Tile tile : distinctTiles(wrappers)) {
+			tile.addOwner(owner);
+		}
+	}
+
+	/**
+	 * Remove the owner from all tiles of the wrappers and free the maps of tiles which are no longer used
+	 */
+	synchronized void release(AnimatedFrame owner, TiledWrapper[] wrappers) {
+		for (Tile tile : distinctTiles(wrappers)) {
+			if (tile.removeOwner(owner) && tile.owners.length == 0) {
+				unlink(tile);// No-op for unshared tiles
+				tile.wrapper.getController().clearViewers();
+				getMapManager().unwrapImage(tile.wrapper);// Recycle the map id
+				this.maps--;
+			}
+		}
+	}
+
+	private void unlink(Tile tile) {
+		Tile first = this.tiles.get(tile.hash);
+		if (first == tile) {
+			if (tile.next != null) {
+				this.tiles.put(tile.hash, tile.next);
+			} else {
+				this.tiles.remove(tile.hash);
+			}
+			return;
+		}
+		for (Tile previous = first; previous != null; previous = previous.next) {
+			if (previous.next == tile) {
+				previous.next = tile.next;
+				return;
+			}
+		}
+	}
+
+	private static Set<Tile> distinctTiles(TiledWrapper[] wrappers) {
+		Set<Tile> tiles = Collections.newSetFromMap(new IdentityHashMap<>());
+		if (wrappers == null) { return tiles; }
+		for (TiledWrapper wrapper : wrappers) {
+			if (wrapper == null) { continue; }
+			for (int x = 0; x < wrapper.getWidth(); x++) {
+				for (int y = 0; y < wrapper.getHeight(); y++) {
+					tiles.add(wrapper.getStoredTile(x, y));
+				}
+			}
+		}
+		return tiles;
+	}
+
+	private MapWrapper wrapImage(ArrayImage image, Reservation reservation) {
+		if (reservation.maps > 0) {
+			reservation.maps--;
+			this.reserved--;
+		}
+		this.maps++;
+		return getMapManager().wrapImage(image);
+	}
+
+	/**
+	 * @return whether the given amount of new maps currently fits into the budget. Use {@link #tryReserve(int)} to actually claim them
+	 */
+	public synchronized boolean hasCapacity(int maps) {
+		return this.maxMaps <= 0 || this.maps + this.reserved + maps <= this.maxMaps;
+	}
+
+	/**
+	 * Reserve maps for new tiles, so frames which are loaded at the same time can't exceed the budget together.
+	 * The reservation has to be released once the tiles are wrapped, which frees the maps which weren't needed because the tiles already existed.
+	 *
+	 * @return the reservation, or <code>null</code> if there aren't enough maps left
+	 */
+	public synchronized Reservation tryReserve(int maps) {
+		if (!hasCapacity(maps)) { return null; }
+		this.reserved += maps;
+		return new Reservation(maps);
+	}
+
+	public synchronized void release(Reservation reservation) {
+		this.reserved -= reservation.maps;
+		reservation.maps = 0;
+	}
+
+	/**
+	 * @return the amount of maps currently used by all frames
+	 */
+	public synchronized int getMapCount() {
+		return this.maps;
+	}
+
+	/**
+	 * @return the amount of distinct maps used by the wrappers
+	 */
+	public synchronized int getMapCount(TiledWrapper[] wrappers) {
+		return distinctTiles(wrappers).size();
+	}
+
+	public int getMaxMaps() {
+		return this.maxMaps;
+	}
+
+	/**
+	 * @return the amount of distinct tiles
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (Tile tile : this.tiles.values()) {
+			for (; tile != null; tile = tile.next) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the amount of tiles which re-used an existing map instead of creating a new one
+	 */
+	public long getSharedTiles() {
+		return this.shared.get();
+	}
+
+	private MapManager getMapManager() {
+		if (this.mapManager == null) {
+			this.mapManager = ((MapManagerPlugin) Bukkit.getPluginManager().getPlugin("MapManager")).getMapManager();
+		}
+		return this.mapManager;
+	}
+
+	// 64-bit FNV-1a
+	static long hash(byte[] data) {
+		long hash = 0xCBF29CE484222325L;
+		for (byte b : data) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Maps reserved by {@link #tryReserve(int)}
+	 */
+	public static final class Reservation {
+
+		int maps;// Reserved maps which weren't used yet
+
+		Reservation(int maps) {
+			this.maps = maps;
+		}
+	}
+
+	public static final class Tile {
+
+		final long       hash;
+		final MapWrapper wrapper;
+		Tile next;// Next tile with the same hash
+
+		// Animations using this tile. Replaced on every change, so it can be read without locking
+		volatile AnimatedFrame[] owners = new AnimatedFrame[0];
+
+		Tile(long hash, MapWrapper wrapper) {
+			this.hash = hash;
+			this.wrapper = wrapper;
+		}
+
+		public MapWrapper getWrapper() {
+			return wrapper;
+		}
+
+		void addOwner(AnimatedFrame owner) {
+			for (AnimatedFrame frame : this.owners) {
+				if (frame == owner) { return; }
+			}
+			AnimatedFrame[] owners = Arrays.copyOf(this.owners, this.owners.length + 1);
+			owners[owners.length - 1] = owner;
+			this.owners = owners;
+		}
+
+		boolean removeOwner(AnimatedFrame owner) {
+			AnimatedFrame[] owners = this.owners;
+			for (int i = 0; i < owners.length; i++) {
+				if (owners[i] == owner) {
+					AnimatedFrame[] copy = new AnimatedFrame[owners.length - 1];
+					System.arraycopy(owners, 0, copy, 0, i);
+					System.arraycopy(owners, i + 1, copy, i, owners.length - i - 1);
+					this.owners = copy;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean isShared() {
+			return this.owners.length > 1;
+		}
+
+		/**
+		 * @return whether any other animation using this tile still has the player as viewer
+		 */
+		boolean isViewedByOtherOwner(OfflinePlayer player, AnimatedFrame owner) {
+			for (AnimatedFrame frame : this.owners) {
+				if (frame != owner && frame.isViewer(player)) { return true; }
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.inventivetalent.mapmanager.ArrayImage;
+import org.inventivetalent.mapmanager.controller.MapController;
+import org.inventivetalent.mapmanager.wrapper.MapWrapper;
+
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Content of a single animation frame, split into one map per item frame.
+ * Unlike MapManager's multi-map wrapper, this allows showing each tile individually.
+ * Tiles come from the {@link TileStore}, so identical tiles may be shared with other frames and animations.
+ */
+public class TiledWrapper {
+
+	static final int TILE_SIZE = 128;
+
+	private final TileStore.Tile[][] tiles;// [row][column]
+	private final int                width;
+	private final int                height;
+
+	TiledWrapper(TileStore.Tile[][] tiles) {
+		this.tiles = tiles;
+		this.height = tiles.length;
+		this.width = tiles.length == 0 ? 0 : tiles[0].length;
+	}
+
+	/**
+	 * @param images      tile images, in the same layout as the cache files ([row][column])
+	 * @param reservation maps reserved for the tiles
+	 */
+	static TiledWrapper wrap(TileStore store, AnimatedFrame owner, ArrayImage[][] images, TileStore.Reservation reservation) {
+		TileStore.Tile[][] tiles = new TileStore.Tile[images.length][];
+		for (int row = 0; row < images.length; row++) {
+			tiles[row] = new TileStore.Tile[images[row].length];
+			for (int column = 0; column < images[row].length; column++) {
+				tiles[row][column] = store.acquire(owner, images[row][column], reservation);
+			}
+		}
+		return new TiledWrapper(tiles);
+	}
+
+	/**
+	 * Split the image into tiles of 128x128 pixels
+	 */
+	static ArrayImage[][] split(BufferedImage image, int width, int height) {
+		ArrayImage[][] images = new ArrayImage[height][width];
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				images[row][column] = new ArrayImage(image.getSubimage(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+			}
+		}
+		return images;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getTileCount() {
+		return width * height;
+	}
+
+	/**
+	 * @param x column, i.e. the first index of the item frame id grid
+	 * @param y row, i.e. the second index of the item frame id grid
+	 */
+	public MapWrapper getTile(int x, int y) {
+		return tiles[y][x].getWrapper();
+	}
+
+	TileStore.Tile getStoredTile(int x, int y) {
+		return tiles[y][x];
+	}
+
+	/**
+	 * @return whether both wrappers consist of the same tiles. Tiles are interned by the {@link TileStore}, so equal contents share the same tile instances.
+	 */
+	public boolean hasSameContent(TiledWrapper other) {
+		if (other == this) { return true; }
+		if (other == null || other.width != width || other.height != height) { return false; }
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				if (tiles[row][column] != other.tiles[row][column]) { return false; }
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the tile images ([row][column])
+	 */
+	public ArrayImage[][] getContent() {
+		ArrayImage[][] content = new ArrayImage[height][width];
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				content[row][column] = tiles[row][column].getWrapper().getContent();
+			}
+		}
+		return content;
+	}
+
+	public void addViewer(Player player) {
+		for (TileStore.Tile[] row : tiles) {
+			for (TileStore.Tile tile : row) {
+				tile.getWrapper().getController().addViewer(player);
+			}
+		}
+	}
+
+	/**
+	 * Remove the viewer from all tiles which aren't also shown to the player by another animation
+	 *
+	 * @param owner animation the player stopped viewing
+	 */
+	public void removeViewer(OfflinePlayer player, AnimatedFrame owner) {
+		for (TileStore.Tile[] row : tiles) {
+			for (TileStore.Tile tile : row) {
+				if (tile.isViewedByOtherOwner(player, owner)) { continue; }
+				tile.getWrapper().getController().removeViewer(player);
+			}
+		}
+	}
+
+	/**
+	 * Remove all viewers from tiles which are only used by the owner. Viewers of shared tiles have to be removed individually.
+	 */
+	public void clearViewers() {
+		for (TileStore.Tile[] row : tiles) {
+			for (TileStore.Tile tile : row) {
+				if (tile.isShared()) { continue; }
+				tile.getWrapper().getController().clearViewers();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the player is a viewer of all tiles
+	 */
+	public boolean isViewing(OfflinePlayer player) {
+		for (TileStore.Tile[] row : tiles) {
+			for (TileStore.Tile tile : row) {
+				if (!tile.getWrapper().getController().isViewing(player)) { return false; }
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add the player as viewer and send the content of all tiles the client doesn't have yet
+	 *
+	 * @return the amount of tiles sent
+	 */
+	public int sendContent(Player player, ContentLedger ledger) {
+		UUID uuid = player.getUniqueId();
+		int sent = 0;
+		for (TileStore.Tile[] row : tiles) {
+			for (TileStore.Tile tile : row) {
+				MapController controller = tile.getWrapper().getController();
+				// Shared tiles may have been sent as part of another frame already
+				if (ledger.hasContent(uuid, tile) && controller.isViewing(player)) {
+					ledger.recordSkipped();
+					continue;
+				}
+				controller.addViewer(player);
+				controller.sendContent(player);
+				ledger.markSent(uuid, tile);
+				sent++;
+			}
+		}
+		return sent;
+	}
+
+	/**
+	 * Show the tiles in the item frames
+	 *
+	 * @param itemFrameIds entity ids of the item frames ([column][row])
+	 * @param visibleTiles tiles to show (index <code>x * height + y</code>), or <code>null</code> to show all tiles
+	 */
+	public void showInFrames(Player player, int[][] itemFrameIds, BitSet visibleTiles) {
+		for (int x = 0; x < itemFrameIds.length && x < width; x++) {
+			for (int y = 0; y < itemFrameIds[x].length && y < height; y++) {
+				if (itemFrameIds[x][y] == 0) { continue; }// No item frame
+				if (visibleTiles != null && !visibleTiles.get(x * height + y)) { continue; }
+				tiles[y][x].getWrapper().getController().showInFrame(player, itemFrameIds[x][y]);
+			}
+		}
+	}
+
+	/**
+	 * @return the amount of tiles {@link #showInFrames(Player, int[][], BitSet)} would send
+	 */
+	public int countShown(int[][] itemFrameIds, BitSet visibleTiles) {
+		int count = 0;
+		for (int x = 0; x < itemFrameIds.length && x < width; x++) {
+			for (int y = 0; y < itemFrameIds[x].length && y < height; y++) {
+				if (itemFrameIds[x][y] == 0) { continue; }
+				if (visibleTiles != null && !visibleTiles.get(x * height + y)) { continue; }
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void clearFrames(Player player, int[][] itemFrameIds) {
+		for (int x = 0; x < itemFrameIds.length && x < width; x++) {
+			for (int y = 0; y < itemFrameIds[x].length && y < height; y++) {
+				if (itemFrameIds[x][y] == 0) { continue; }
+				tiles[y][x].getWrapper().getController().clearFrame(player, itemFrameIds[x][y]);
+			}
+		}
+	}
+
+}
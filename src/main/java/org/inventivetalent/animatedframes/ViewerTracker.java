@@ -0,0 +1,295 @@
+package org.inventivetalent.animatedframes;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.inventivetalent.boundingbox.BoundingBox;
+
+import java.util.*;
+
+/**
+ * Publishes a {@link PositionSnapshot} of all players and keeps the in-range viewers of all frames up to date. Runs on the main thread once per tick.
+ */
+public class ViewerTracker implements Runnable, FrameIndex.FrameVisitor {
+
+	// Extra distance a viewer has to move away before it leaves the range, so players standing on the border don't flicker in and out
+	static final double HYSTERESIS             = 2.0D;
+	// spigot.yml default of entity-tracking-range.misc
+	static final int    DEFAULT_TRACKING_RANGE = 32;
+	// Distance a player can be behind the frame's box and still see it
+	static final double FRONT_MARGIN           = 0.25D;
+	// Radius of a sphere around a single item frame
+	static final double TILE_RADIUS            = 0.75D;
+
+	private final AnimatedFramesPlugin plugin;
+
+	private final Set<AnimatedFrame>   activeFrames   = new HashSet<>();// Frames with at least one viewer in range
+	private final Location             location       = new Location(null, 0, 0, 0);
+	private final Map<String, Integer> trackingRanges = new HashMap<>();// Cached entity tracking range per world
+
+	private volatile PositionSnapshot snapshot    = PositionSnapshot.EMPTY;
+	private volatile boolean          invalidated = true;
+	private          int              tick;
+	private          double           leaveDistanceSquared;
+
+	private PlayerSnapshot current;
+
+	public ViewerTracker(AnimatedFramesPlugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * @return the player positions of the last tick
+	 */
+	public PositionSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Re-check the range of all players on the next tick, e.g. after viewers were added
+	 */
+	public void invalidate() {
+		this.invalidated = true;
+	}
+
+	@Override
+	public void run() {
+		double leaveDistance = plugin.maxAnimateDistance + HYSTERESIS;
+		this.leaveDistanceSquared = leaveDistance * leaveDistance;
+		boolean checkAll = this.invalidated;
+		this.invalidated = false;
+
+		// Capture the positions of all players; Unchanged positions re-use the previous snapshot
+		PositionSnapshot previous = this.snapshot;
+		Collection<? extends Player> onlinePlayers = Bukkit.getOnlinePlayers();
+		PlayerSnapshot[] players = new PlayerSnapshot[onlinePlayers.size()];
+		int index = 0;
+		for (Player player : onlinePlayers) {
+			player.getLocation(this.location);
+			double eyeHeight = player.getEyeHeight();
+			PlayerSnapshot last = previous.get(player.getUniqueId());
+			players[index++] = last != null && last.matches(player, this.location, eyeHeight) ? last : new PlayerSnapshot(player, this.location, eyeHeight);
+		}
+		PositionSnapshot snapshot = this.snapshot = new PositionSnapshot(++this.tick, players);
+
+		// Remove viewers which left the range
+		for (Iterator<AnimatedFrame> iterator = this.activeFrames.iterator(); iterator.hasNext(); ) {
+			AnimatedFrame frame = iterator.next();
+			if (!frame.updateViewersInRange(this)) {
+				iterator.remove();
+			}
+		}
+
+		// Add viewers which came into range
+		for (int i = 0; i < snapshot.size(); i++) {
+			PlayerSnapshot player = snapshot.get(i);
+			if (!checkAll && player.isSameBlock(previous.get(player.getUuid()))) { continue; }
+			this.current = player;
+			plugin.frameManager.forEachFrameNear(player.getWorldName(), player.getX(), player.getY(), player.getZ(), plugin.maxAnimateDistance, this);
+		}
+		this.current = null;
+	}
+
+	@Override
+	public void visit(AnimatedFrame frame) {
+		PlayerSnapshot player = this.current;
+		if (frame.isViewerInRange(player.getUuid()) || !frame.isViewer(player.getPlayer())) { return; }
+		if (distanceSquared(frame, player) < plugin.maxAnimateDistanceSquared) {
+			FrameViewer viewer = new FrameViewer(player);
+			viewer.setTracking(isTracking(frame, player));
+			viewer.setInView(isInView(frame, player));
+			if (viewer.isVisible()) {
+				viewer.setVisibleTiles(getVisibleTiles(frame, player, null));
+			}
+			frame.addViewerInRange(viewer);
+			this.activeFrames.add(frame);
+		}
+	}
+
+	/**
+	 * Checks if the viewer is still in range and updates its position
+	 */
+	boolean isStillInRange(AnimatedFrame frame, FrameViewer viewer) {
+		PlayerSnapshot player = this.snapshot.get(viewer.getUniqueId());
+		if (player == null || player.getPlayer() != viewer.getPlayer()) { return false; }// Offline
+		if (!frame.isViewer(player.getPlayer())) { return false; }
+		if (!player.getWorldName().equals(frame.getWorldName())) { return false; }
+		if (frame.isRemoved()) { return false; }
+		if (distanceSquared(frame, player) > this.leaveDistanceSquared) { return false; }
+		viewer.setPosition(player);
+
+		boolean wasVisible = viewer.isVisible();
+		BitSet previousTiles = viewer.getVisibleTiles();
+		viewer.setTracking(isTracking(frame, player));
+		viewer.setInView(isInView(frame, player));
+		BitSet tiles = viewer.isVisible() ? getVisibleTiles(frame, player, previousTiles) : null;
+		viewer.setVisibleTiles(tiles);
+		if (!wasVisible && viewer.isVisible()) {
+			frame.resync(viewer, null);
+		} else if (viewer.isVisible() && previousTiles != null && tiles != previousTiles) {
+			// Update the tiles which came into view
+			BitSet newTiles;
+			if (tiles == null) {
+				newTiles = new BitSet();
+				newTiles.set(0, frame.getWidth() * frame.getHeight());
+			} else {
+				newTiles = (BitSet) tiles.clone();
+			}
+			newTiles.andNot(previousTiles);
+			if (!newTiles.isEmpty()) {
+				frame.resync(viewer, newTiles);
+			}
+		} else if (!viewer.isVisible()) {
+			viewer.takePendingFrame();// Resynced once it's visible again
+		} else if (viewer.hasPendingFrame() && viewer.isWritable()) {
+			frame.flushPendingFrame(viewer);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the player is in front of the frame and the frame is within the configured field of view
+	 */
+	boolean isInView(AnimatedFrame frame, PlayerSnapshot player) {
+		if (!plugin.viewCulling) { return true; }
+		return isInView(frame.getBoundingBox(), frame.getFacing().getFrameDirection(), player, plugin.viewCullingCos);
+	}
+
+	static boolean isInView(BoundingBox box, BlockFace face, PlayerSnapshot player, double minCos) {
+		double eyeX = player.getX();
+		double eyeY = player.getEyeY();
+		double eyeZ = player.getZ();
+
+		// Behind the frame; Uses the back side of the box, since the item frames are somewhere in between
+		double front = (face.getModX() != 0 ? (eyeX - (face.getModX() > 0 ? box.minX : box.maxX)) * face.getModX() : 0)
+				+ (face.getModY() != 0 ? (eyeY - (face.getModY() > 0 ? box.minY : box.maxY)) * face.getModY() : 0)
+				+ (face.getModZ() != 0 ? (eyeZ - (face.getModZ() > 0 ? box.minZ : box.maxZ)) * face.getModZ() : 0);
+		if (front < -FRONT_MARGIN) { return false; }
+
+		if (minCos <= -1) { return true; }// No field of view limit
+
+		// Point of the frame closest to the line of sight, covers looking at the center of large frames
+		double dirX = player.getDirectionX();
+		double dirY = player.getDirectionY();
+		double dirZ = player.getDirectionZ();
+		double centerX = (box.minX + box.maxX) / 2;
+		double centerY = (box.minY + box.maxY) / 2;
+		double centerZ = (box.minZ + box.maxZ) / 2;
+		double t = Math.max(0, (centerX - eyeX) * dirX + (centerY - eyeY) * dirY + (centerZ - eyeZ) * dirZ);
+		if (isInCone(clamp(eyeX + dirX * t, box.minX, box.maxX) - eyeX, clamp(eyeY + dirY * t, box.minY, box.maxY) - eyeY, clamp(eyeZ + dirZ * t, box.minZ, box.maxZ) - eyeZ, dirX, dirY, dirZ, minCos)) {
+			return true;
+		}
+		// Corners of the frame
+		for (int i = 0; i < 8; i++) {
+			double x = ((i & 1) == 0 ? box.minX : box.maxX) - eyeX;
+			double y = ((i & 2) == 0 ? box.minY : box.maxY) - eyeY;
+			double z = ((i & 4) == 0 ? box.minZ : box.maxZ) - eyeZ;
+			if (isInCone(x, y, z, dirX, dirY, dirZ, minCos)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks which tiles of the frame are within the field of view of the player
+	 *
+	 * @param previous tiles visible during the last tick, returned instead of an equal new set
+	 * @return the visible tiles, or <code>null</code> if all tiles are visible
+	 */
+	BitSet getVisibleTiles(AnimatedFrame frame, PlayerSnapshot player, BitSet previous) {
+		if (!plugin.viewCulling || !plugin.tileCulling || plugin.viewCullingCos <= -1) { return null; }
+		double[] positions = frame.getTilePositions();
+		int tileCount = positions.length / 3;
+		if (tileCount <= 1) { return null; }
+
+		BitSet tiles = null;
+		for (int tile = 0; tile < tileCount; tile++) {
+			if (isTileInView(positions, tile * 3, player, plugin.viewCullingAngle)) {
+				if (tiles != null) {
+					tiles.set(tile);
+				}
+			} else if (tiles == null) {
+				tiles = new BitSet(tileCount);
+				tiles.set(0, tile);// All previous tiles were visible
+			}
+		}
+		if (tiles != null && tiles.equals(previous)) {
+			return previous;
+		}
+		return tiles;
+	}
+
+	static boolean isTileInView(double[] positions, int offset, PlayerSnapshot player, double fovAngle) {
+		double x = positions[offset] - player.getX();
+		double y = positions[offset + 1] - player.getEyeY();
+		double z = positions[offset + 2] - player.getZ();
+		double length = Math.sqrt(x * x + y * y + z * z);
+		if (length <= TILE_RADIUS) { return true; }
+		// Widen the cone by the angle the tile covers, so tiles on the edge of the screen are still updated
+		double angle = fovAngle + Math.asin(TILE_RADIUS / length);
+		if (angle >= Math.PI) { return true; }
+		return x * player.getDirectionX() + y * player.getDirectionY() + z * player.getDirectionZ() >= length * Math.cos(angle);
+	}
+
+	static boolean isInCone(double x, double y, double z, double dirX, double dirY, double dirZ, double minCos) {
+		double lengthSquared = x * x + y * y + z * z;
+		if (lengthSquared < 1) { return true; }// Right next to the frame
+		return x * dirX + y * dirY + z * dirZ >= Math.sqrt(lengthSquared) * minCos;
+	}
+
+	static double clamp(double value, double min, double max) {
+		return value < min ? min : value > max ? max : value;
+	}
+
+	/**
+	 * Checks if the client of the player has the item frames loaded, i.e. a chunk of the frame is loaded and the player is within entity tracking range
+	 */
+	boolean isTracking(AnimatedFrame frame, PlayerSnapshot player) {
+		World world = player.getPlayer().getWorld();
+		BoundingBox box = frame.getBoundingBox();
+
+		// Entities are tracked in a square around the player
+		double dx = Math.max(0, Math.max(box.minX - player.getX(), player.getX() - box.maxX));
+		double dz = Math.max(0, Math.max(box.minZ - player.getZ(), player.getZ() - box.maxZ));
+		if (Math.max(dx, dz) > getTrackingRange(world)) { return false; }
+
+		for (int chunkX = FrameIndex.floor(box.minX) >> 4; chunkX <= FrameIndex.floor(box.maxX) >> 4; chunkX++) {
+			for (int chunkZ = FrameIndex.floor(box.minZ) >> 4; chunkZ <= FrameIndex.floor(box.maxZ) >> 4; chunkZ++) {
+				if (world.isChunkLoaded(chunkX, chunkZ)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	int getTrackingRange(World world) {
+		Integer range = this.trackingRanges.get(world.getName());
+		if (range == null) {
+			int configured = plugin.entityTrackingRange >= 0 ? plugin.entityTrackingRange : readSpigotTrackingRange(world.getName());
+			// Entities outside of the view distance aren't sent either
+			range = Math.min(configured, Bukkit.getViewDistance() * 16);
+			this.trackingRanges.put(world.getName(), range);
+		}
+		return range;
+	}
+
+	static int readSpigotTrackingRange(String world) {
+		try {
+			YamlConfiguration config = Bukkit.spigot().getConfig();
+			return config.getInt("world-settings." + world + ".entity-tracking-range.misc", config.getInt("world-settings.default.entity-tracking-range.misc", DEFAULT_TRACKING_RANGE));
+		} catch (Throwable ignored) {
+			// Not running Spigot
+			return DEFAULT_TRACKING_RANGE;
+		}
+	}
+
+	static double distanceSquared(AnimatedFrame frame, PlayerSnapshot player) {
+		return player.distanceSquared(frame.getBaseVector().getX(), frame.getBaseVector().getY(), frame.getBaseVector().getZ());
+	}
+
+}
@@ -11,9 +11,14 @@ import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.inventivetalent.animatedframes.AnimatedFrame;
 import org.inventivetalent.animatedframes.AnimatedFramesPlugin;
+import org.inventivetalent.animatedframes.FrameTile;
+import org.inventivetalent.animatedframes.PlayerSnapshot;
 import org.inventivetalent.mapmanager.event.MapInteractEvent;
 import org.inventivetalent.reflection.minecraft.Minecraft;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 public class ClickListener implements Listener {
@@ -38,7 +43,10 @@ public class ClickListener implements Listener {
 				}
 				if (event.getHandID() != 0) { return; }
 
-				handleInteract(event.getPlayer(), event, event.getActionID());
+				// The clicked item frame is known, so only the cursor position inside its animation is left to find
+				FrameTile tile = plugin.frameManager.getFrameTile(event.getEntityID());
+				if (tile == null || !tile.getFrame().isClickable()) { return; }
+				handleClick(event.getPlayer(), Collections.singletonList(tile.getFrame()), event.getActionID());
 			}
 		});
 	}
@@ -63,25 +71,35 @@ public class ClickListener implements Listener {
 		handleInteract(event.getPlayer(), event, actionId);
 	}
 
+	void handleClick(final Player player, List<AnimatedFrame> frames, final int action) {
+		final CursorPosition.CursorMapQueryResult queryResult = CursorPosition.findMenuByCursor(player, frames);
+
+		if (queryResult != null && queryResult.isFound()) {
+			Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+				@Override
+				public void run() {
+					queryResult.getClickable().handleClick(player, queryResult.getPosition(), action);
+				}
+			});
+		}
+	}
+
 	void handleInteract(final Player player, Cancellable cancellable, final int action/* 0 = interact (right-click), 1 = attack (left-click) */) {
 
 		Block targetBlock = player.getTargetBlock((Set<Material>) null, 16);
 		if (targetBlock != null && targetBlock.getType() != Material.AIR) {
-			Set<AnimatedFrame> frames = plugin.frameManager.getFramesInWorld(player.getWorld().getName());
-			frames.removeIf(f -> !f.isClickable());
-
-			final CursorPosition.CursorMapQueryResult queryResult = CursorPosition.findMenuByCursor(player, frames);
-
-			if (queryResult != null && queryResult.isFound()) {
-				Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
-					@Override
-					public void run() {
-						queryResult.getClickable().handleClick(player, queryResult.getPosition(), action);
-					}
-				});
+			PlayerSnapshot snapshot = plugin.viewerTracker.getSnapshot().get(player.getUniqueId());
+			if (snapshot == null) { return; }
+			List<AnimatedFrame> frames = new ArrayList<>();
+			plugin.frameManager.forEachFrameNear(snapshot.getWorldName(), snapshot.getX(), snapshot.getY(), snapshot.getZ(), 16, frame -> {
+				if (frame.isClickable()) {
+					frames.add(frame);
+				}
+			});
+			if (frames.isEmpty()) { return; }
 
-//				cancellable.setCancelled(true);
-			}
+			handleClick(player, frames, action);
+//			cancellable.setCancelled(true);
 		}
 
 	}
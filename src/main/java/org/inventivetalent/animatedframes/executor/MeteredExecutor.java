@@ -0,0 +1,105 @@
+package org.inventivetalent.animatedframes.executor;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor which keeps track of its queued, active and completed tasks
+ */
+public class MeteredExecutor implements Executor {
+
+	private final String          name;
+	private final ExecutorService delegate;
+
+	private final AtomicInteger queued    = new AtomicInteger();
+	private final AtomicInteger active    = new AtomicInteger();
+	private final AtomicLong    completed = new AtomicLong();
+	private final AtomicLong    rejected  = new AtomicLong();
+
+	public MeteredExecutor(String name, ExecutorService delegate) {
+		this.name = name;
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param name          thread name prefix
+	 * @param threads       maximum amount of threads
+	 * @param queueCapacity maximum amount of waiting tasks, further tasks are rejected
+	 */
+	public static MeteredExecutor fixed(String name, int threads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(name));
+		executor.allowCoreThreadTimeOut(true);
+		return new MeteredExecutor(name, executor);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		this.queued.incrementAndGet();
+		try {
+			this.delegate.execute(() -> {
+				this.queued.decrementAndGet();
+				this.active.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					this.active.decrementAndGet();
+					this.completed.incrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.queued.decrementAndGet();
+			this.rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop the executor, interrupting running tasks and discarding queued ones
+	 */
+	public void shutdown() {
+		this.delegate.shutdownNow();
+	}
+
+	/**
+	 * Stop accepting new tasks and wait for the queued ones to complete
+	 *
+	 * @return <code>false</code> if the timeout elapsed before all tasks completed
+	 */
+	public boolean shutdownGracefully(long timeout, TimeUnit unit) {
+		this.delegate.shutdown();
+		try {
+			return this.delegate.awaitTermination(timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the amount of tasks waiting to be executed
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * @return the amount of tasks currently running
+	 */
+	public int getActiveTasks() {
+		return active.get();
+	}
+
+	public long getCompletedTasks() {
+		return completed.get();
+	}
+
+	public long getRejectedTasks() {
+		return rejected.get();
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.inventivetalent.animatedframes.executor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NamedThreadFactory implements ThreadFactory {
+
+	private final String        name;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	public NamedThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, this.name + " #" + this.counter.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,24 @@
+package org.inventivetalent.animatedframes.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 11 implementation, replaced by the version in src/main/java21 on Java 21+ runtimes (Multi-Release jar)
+ */
+public class ThreadSupport {
+
+	public static boolean isVirtualThreadSupported() {
+		return false;
+	}
+
+	/**
+	 * @param name    thread name prefix
+	 * @param virtual whether to use virtual threads, if supported
+	 * @return an executor which starts a new thread (or re-uses an idle one) for every task
+	 */
+	public static ExecutorService newTaskExecutor(String name, boolean virtual) {
+		return Executors.newCachedThreadPool(new NamedThreadFactory(name));
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.inventivetalent.animatedframes.playback;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable mapping between the elapsed time of an animation and its frames
+ */
+public final class FrameTimeline {
+
+	private final long[] offsets;// Time (ns) since the start of the animation at which each frame is due
+	private final long   duration;
+
+	public FrameTimeline(int[] delays) {
+		this.offsets = new long[delays.length];
+		long time = 0;
+		for (int i = 0; i < delays.length; i++) {
+			this.offsets[i] = time;
+			time += TimeUnit.MILLISECONDS.toNanos(Math.max(1, delays[i]));
+		}
+		this.duration = time;
+	}
+
+	public int length() {
+		return this.offsets.length;
+	}
+
+	public long getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * @param frame frame index
+	 * @return the time (ns) since the start of the animation at which the frame is due
+	 */
+	public long offsetOf(int frame) {
+		return frame >= this.offsets.length ? this.duration : this.offsets[frame];
+	}
+
+	/**
+	 * @param elapsed time (ns) since the start of the animation, in the range 0 - {@link #getDuration()}
+	 * @return the frame which should be visible at that time
+	 */
+	public int frameAt(long elapsed) {
+		int index = Arrays.binarySearch(this.offsets, elapsed);
+		if (index < 0) {
+			index = -index - 2;// Insertion point - 1 = last frame which started before the elapsed time
+		}
+		return Math.max(0, Math.min(index, this.offsets.length - 1));
+	}
+
+}
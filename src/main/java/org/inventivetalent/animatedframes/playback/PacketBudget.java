@@ -0,0 +1,149 @@
+package org.inventivetalent.animatedframes.playback;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-wide limit of frame update packets per second, split evenly between all animations which are currently sending updates.
+ * Animations which run out of packets skip frames until they earned enough again.
+ */
+public class PacketBudget {
+
+	static final long WINDOW_NANOS    = TimeUnit.SECONDS.toNanos(1);
+	// Maximum time an animation can save up unused packets for
+	static final long MAX_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private final double packetsPerNano;
+
+	// Animations which sent updates during the last window
+	private final    AtomicInteger activeShares = new AtomicInteger();
+	private volatile int           competitors  = 1;
+	private volatile long          currentWindow;
+
+	private final AtomicLong sentPackets      = new AtomicLong();
+	private final AtomicLong throttledPackets = new AtomicLong();
+
+	/**
+	 * @param packetsPerSecond maximum amount of packets per second, or <code>0</code> for no limit
+	 */
+	public PacketBudget(int packetsPerSecond) {
+		this.packetsPerNano = Math.max(0, packetsPerSecond) / (double) WINDOW_NANOS;
+	}
+
+	public boolean isLimited() {
+		return this.packetsPerNano > 0;
+	}
+
+	/**
+	 * Acquire packets for sending a frame update to a single viewer of an animation
+	 *
+	 * @param share   share of the animation
+	 * @param packets packets the update consists of
+	 * @param now     current {@link System#nanoTime()}
+	 * @return <code>false</code> if the update has to be skipped, because the animation used up its share
+	 */
+	public boolean tryAcquire(Share share, int packets, long now) {
+		if (packets <= 0) { return true; }
+		if (!isLimited()) {
+			this.sentPackets.addAndGet(packets);
+			return true;
+		}
+		synchronized (share) {
+			refill(share, packets, now);
+			if (share.credits < packets) {
+				this.throttledPackets.addAndGet(packets);
+				return false;
+			}
+			share.credits -= packets;
+		}
+		this.sentPackets.addAndGet(packets);
+		return true;
+	}
+
+	/**
+	 * Charge packets which have to be sent regardless of the budget, e.g. contents or resyncs of the current frame.
+	 * The animation then skips updates until it earned them back.
+	 */
+	public void charge(Share share, int packets, long now) {
+		if (packets <= 0) { return; }
+		this.sentPackets.addAndGet(packets);
+		if (!isLimited()) { return; }
+		synchronized (share) {
+			refill(share, packets, now);
+			share.credits -= packets;
+		}
+	}
+
+	private void refill(Share share, int packets, long now) {
+		markActive(share, now);
+
+		double rate = this.packetsPerNano / this.competitors;
+		if (share.lastRefill == 0) {
+			share.credits = packets;// Always allow the first update
+		} else {
+			// Save up at least enough for a single viewer, so large frames aren't stuck forever
+			share.credits = Math.min(share.credits + (now - share.lastRefill) * rate, Math.max(rate * MAX_BURST_NANOS, packets));
+		}
+		share.lastRefill = now;
+	}
+
+	void markActive(Share share, long now) {
+		long window = Math.floorDiv(now, WINDOW_NANOS);
+		if (share.window == window) { return; }
+		share.window = window;
+		if (window != this.currentWindow) {
+			synchronized (this) {
+				if (window != this.currentWindow) {
+					this.competitors = Math.max(1, this.activeShares.getAndSet(0));
+					this.currentWindow = window;
+				}
+			}
+		}
+		this.activeShares.incrementAndGet();
+	}
+
+	/**
+	 * @return amount of animations sharing the budget
+	 */
+	public int getCompetitors() {
+		return competitors;
+	}
+
+	public long getSentPackets() {
+		return sentPackets.get();
+	}
+
+	/**
+	 * @return amount of packets which were not sent because the budget was exceeded
+	 */
+	public long getThrottledPackets() {
+		return throttledPackets.get();
+	}
+
+	/**
+	 * Budget state of a single animation. Credits are guarded by the share itself, since contents are also charged from the main thread.
+	 */
+	public static final class Share {
+		double credits;
+		long   lastRefill;
+		long   window = Long.MIN_VALUE;
+		int    offset;// First viewer to update, rotated so all viewers get the same amount of updates. Only used by the playback thread
+
+		/**
+		 * @return index of the first viewer to update
+		 */
+		public int start(int viewers) {
+			if (viewers <= 0) { return 0; }
+			return Math.floorMod(this.offset, viewers);
+		}
+
+		/**
+		 * Advance the rotation, so the next update starts with the first viewer which was skipped
+		 */
+		public void advance(int start, int granted) {
+			this.offset = start + granted;
+		}
+	}
+
+}
@@ -0,0 +1,237 @@
+package org.inventivetalent.animatedframes.playback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel which runs all {@link PlaybackTask}s on a fixed number of threads, independent of the amount of scheduled tasks
+ */
+public class PlaybackScheduler {
+
+	static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	static final int  WHEEL_SIZE = 1024;// Must be a power of two
+	static final int  WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private final Logger        logger;
+	private final Wheel[]       wheels;
+	private final AtomicInteger nextWheel = new AtomicInteger();
+
+	public PlaybackScheduler(int threads, Logger logger) {
+		this.logger = logger;
+		this.wheels = new Wheel[Math.max(1, threads)];
+		for (int i = 0; i < this.wheels.length; i++) {
+			this.wheels[i] = new Wheel(i);
+		}
+	}
+
+	/**
+	 * Schedule a task
+	 *
+	 * @param task     task to run
+	 * @param deadline {@link System#nanoTime()} at which the task is due
+	 */
+	public void schedule(PlaybackTask task, long deadline) {
+		this.wheels[Math.floorMod(this.nextWheel.getAndIncrement(), this.wheels.length)].submit(new Timeout(task, deadline));
+	}
+
+	public int getThreadCount() {
+		return this.wheels.length;
+	}
+
+	/**
+	 * @return the amount of currently scheduled tasks
+	 */
+	public int size() {
+		int size = 0;
+		for (Wheel wheel : this.wheels) {
+			size += wheel.size + wheel.pending.size();
+		}
+		return size;
+	}
+
+	public void shutdown() {
+		for (Wheel wheel : this.wheels) {
+			wheel.shutdown();
+		}
+	}
+
+	static final class Timeout {
+		final PlaybackTask task;
+		long deadline;
+		long remainingRounds;
+
+		Timeout next;
+		Timeout prev;
+
+		Timeout(PlaybackTask task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+	}
+
+	static final class Bucket {
+		Timeout head;
+		Timeout tail;
+
+		void add(Timeout timeout) {
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+		}
+	}
+
+	final class Wheel implements Runnable {
+
+		final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+		final Bucket[]       buckets = new Bucket[WHEEL_SIZE];
+		final List<Timeout>  expired = new ArrayList<>();
+		final Thread         thread;
+		final long           startTime;
+
+		long tick;
+		volatile int     size;
+		volatile boolean idle;
+		volatile boolean running = true;
+
+		Wheel(int index) {
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				this.buckets[i] = new Bucket();
+			}
+			this.startTime = System.nanoTime();
+			this.thread = new Thread(this, "AnimatedFrames Playback #" + index);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		void submit(Timeout timeout) {
+			this.pending.add(timeout);
+			if (this.idle) {
+				LockSupport.unpark(this.thread);
+			}
+		}
+
+		void shutdown() {
+			this.running = false;
+			LockSupport.unpark(this.thread);
+		}
+
+		@Override
+		public void run() {
+			while (this.running) {
+				if (this.size == 0 && this.pending.isEmpty()) {
+					// Nothing to do, sleep until something is submitted
+					this.idle = true;
+					if (this.pending.isEmpty()) {
+						LockSupport.park(this);
+					}
+					this.idle = false;
+					this.tick = Math.max(this.tick, (System.nanoTime() - this.startTime) / TICK_NANOS);
+					continue;
+				}
+
+				try {
+					waitForNextTick();
+					transferPending();
+					expire(this.buckets[(int) (this.tick & WHEEL_MASK)]);
+					this.tick++;
+				} catch (Throwable throwable) {
+					// Keep the wheel running, otherwise all animations on it would stop
+					logger.log(Level.SEVERE, "Unhandled exception in " + this.thread.getName(), throwable);
+				}
+			}
+		}
+
+		void waitForNextTick() {
+			long deadline = this.startTime + (this.tick + 1) * TICK_NANOS;
+			while (true) {
+				long sleep = deadline - System.nanoTime();
+				if (sleep <= 0 || !this.running) {
+					return;
+				}
+				LockSupport.parkNanos(this, sleep);
+			}
+		}
+
+		void transferPending() {
+			Timeout timeout;
+			while ((timeout = this.pending.poll()) != null) {
+				place(timeout, this.tick);
+			}
+		}
+
+		void place(Timeout timeout, long fromTick) {
+			long calculated = (timeout.deadline - this.startTime) / TICK_NANOS;
+			long ticks = Math.max(calculated, fromTick);// Don't schedule for the past
+			timeout.remainingRounds = (ticks - fromTick) / WHEEL_SIZE;
+			this.buckets[(int) (ticks & WHEEL_MASK)].add(timeout);
+			this.size++;
+		}
+
+		void expire(Bucket bucket) {
+			Timeout timeout = bucket.head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					bucket.remove(timeout);
+					this.size--;
+					long nextDeadline = runTask(timeout.task);
+					if (nextDeadline != PlaybackTask.STOP) {
+						timeout.deadline = nextDeadline;
+						this.expired.add(timeout);
+					}
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+
+			// Re-schedule after the bucket is done, so nothing can be placed in the bucket which is currently processed
+			for (int i = 0; i < this.expired.size(); i++) {
+				place(this.expired.get(i), this.tick + 1);
+			}
+			this.expired.clear();
+		}
+
+		long runTask(PlaybackTask task) {
+			try {
+				// Sampled per task, so the time spent on earlier tasks of the bucket counts towards the jitter
+				return task.tick(System.nanoTime());
+			} catch (Throwable throwable) {
+				logger.log(Level.SEVERE, "Unhandled exception in playback task " + task.getName(), throwable);
+				try {
+					task.onStopped();
+				} catch (Throwable stopThrowable) {
+					logger.log(Level.SEVERE, "Unhandled exception while stopping playback task " + task.getName(), stopThrowable);
+				}
+				return PlaybackTask.STOP;
+			}
+		}
+	}
+
+}
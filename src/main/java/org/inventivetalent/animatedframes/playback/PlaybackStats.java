@@ -0,0 +1,124 @@
+package org.inventivetalent.animatedframes.playback;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing statistics of an animation. The jitter is only recorded by the playback thread, the counters are also updated from the main thread.
+ */
+public class PlaybackStats {
+
+	private static final double SMOOTHING = 0.05;
+
+	private final    LongAdder displayedFrames   = new LongAdder();
+	private final    LongAdder skippedFrames     = new LongAdder();
+	private volatile double    averageJitter;
+	private volatile long      maxJitter;
+	private final    LongAdder suppressedPackets = new LongAdder();
+	private final    LongAdder culledPackets     = new LongAdder();
+	private final    LongAdder throttledPackets  = new LongAdder();
+	private final    LongAdder reducedPackets    = new LongAdder();
+	private final    LongAdder droppedFrames     = new LongAdder();
+
+	/**
+	 * @param jitter  time (ns) between the deadline of the frame and the time it was actually displayed
+	 * @param skipped amount of frames which were skipped to catch up
+	 */
+	public void record(long jitter, int skipped) {
+		this.displayedFrames.increment();
+		this.skippedFrames.add(skipped);
+		this.averageJitter += (jitter - this.averageJitter) * SMOOTHING;
+		if (jitter > this.maxJitter) {
+			this.maxJitter = jitter;
+		}
+	}
+
+	/**
+	 * @param suppressed amount of frame updates which weren't sent, because the client wasn't tracking the item frames
+	 * @param culled     amount of frame updates which weren't sent, because the viewer was facing away from the frame
+	 * @param reduced    amount of frame updates which weren't sent, because the viewer was far away
+	 * @param throttled  amount of frame updates which weren't sent, because the packet budget was exceeded
+	 */
+	public void recordSuppressed(int suppressed, int culled, int reduced, int throttled) {
+		this.suppressedPackets.add(suppressed);
+		this.culledPackets.add(culled);
+		this.reducedPackets.add(reduced);
+		this.throttledPackets.add(throttled);
+	}
+
+	/**
+	 * Called when a pending frame for a lagging client was replaced by a newer one before it could be sent
+	 */
+	public void recordDropped() {
+		this.droppedFrames.increment();
+	}
+
+	public void reset() {
+		this.displayedFrames.reset();
+		this.skippedFrames.reset();
+		this.averageJitter = 0;
+		this.maxJitter = 0;
+		this.suppressedPackets.reset();
+		this.culledPackets.reset();
+		this.throttledPackets.reset();
+		this.reducedPackets.reset();
+		this.droppedFrames.reset();
+	}
+
+	public long getDisplayedFrames() {
+		return displayedFrames.sum();
+	}
+
+	public long getSkippedFrames() {
+		return skippedFrames.sum();
+	}
+
+	/**
+	 * @return exponential moving average of the jitter (ns)
+	 */
+	public double getAverageJitter() {
+		return averageJitter;
+	}
+
+	/**
+	 * @return highest recorded jitter (ns)
+	 */
+	public long getMaxJitter() {
+		return maxJitter;
+	}
+
+	/**
+	 * @return amount of frame updates which were not sent to viewers in range, because their client wasn't tracking the item frames
+	 */
+	public long getSuppressedPackets() {
+		return suppressedPackets.sum();
+	}
+
+	/**
+	 * @return amount of frame updates which were not sent to viewers in range, because they were facing away from the frame
+	 */
+	public long getCulledPackets() {
+		return culledPackets.sum();
+	}
+
+	/**
+	 * @return amount of frame updates which were not sent to viewers, because the packet budget was exceeded
+	 */
+	public long getThrottledPackets() {
+		return throttledPackets.sum();
+	}
+
+	/**
+	 * @return amount of frames which were never sent to lagging clients, because a newer frame replaced them
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.sum();
+	}
+
+	/**
+	 * @return amount of frame updates which were not sent to viewers, because of their level of detail
+	 */
+	public long getReducedPackets() {
+		return reducedPackets.sum();
+	}
+
+}
@@ -0,0 +1,29 @@
+package org.inventivetalent.animatedframes.playback;
+
+public interface PlaybackTask {
+
+	/**
+	 * Return value of {@link #tick(long)} to remove the task from the scheduler
+	 */
+	long STOP = Long.MIN_VALUE;
+
+	/**
+	 * Called by the {@link PlaybackScheduler} once the deadline of this task is due
+	 *
+	 * @param now current {@link System#nanoTime()}
+	 * @return the next deadline (in {@link System#nanoTime()} units), or {@link #STOP}
+	 */
+	long tick(long now);
+
+	/**
+	 * @return name of the task, used in log messages
+	 */
+	String getName();
+
+	/**
+	 * Called by the {@link PlaybackScheduler} if the task was removed, because {@link #tick(long)} threw an exception
+	 */
+	default void onStopped() {
+	}
+
+}
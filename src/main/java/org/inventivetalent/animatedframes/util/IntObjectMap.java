@@ -0,0 +1,126 @@
+package org.inventivetalent.animatedframes.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map with primitive int keys, to avoid boxing in lookups.
+ * Not thread-safe.
+ */
+public class IntObjectMap<V> {
+
+	private int[]    keys;
+	private Object[] values;
+	private int      size;
+	private int      mask;
+
+	public IntObjectMap() {
+		this(16);
+	}
+
+	public IntObjectMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int index = hash(key) & this.mask;
+		Object value;
+		while ((value = this.values[index]) != null) {
+			if (this.keys[index] == key) {
+				return (V) value;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) { throw new IllegalArgumentException("value cannot be null"); }
+		int index = hash(key) & this.mask;
+		Object existing;
+		while ((existing = this.values[index]) != null) {
+			if (this.keys[index] == key) {
+				this.values[index] = value;
+				return (V) existing;
+			}
+			index = (index + 1) & this.mask;
+		}
+		this.keys[index] = key;
+		this.values[index] = value;
+		if (++this.size * 2 > this.keys.length) {
+			resize();
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int index = hash(key) & this.mask;
+		Object value;
+		while ((value = this.values[index]) != null) {
+			if (this.keys[index] == key) {
+				shiftBack(index);
+				this.size--;
+				return (V) value;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return null;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public void clear() {
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	// Moves following entries of the probe sequence into the freed slot, so lookups don't need tombstones
+	private void shiftBack(int free) {
+		int index = free;
+		while (true) {
+			index = (index + 1) & this.mask;
+			if (this.values[index] == null) {
+				break;
+			}
+			int home = hash(this.keys[index]) & this.mask;
+			// Only move the entry if its home slot isn't between the free slot and its current slot
+			if (((index - home) & this.mask) >= ((index - free) & this.mask)) {
+				this.keys[free] = this.keys[index];
+				this.values[free] = this.values[index];
+				free = index;
+			}
+		}
+		this.values[free] = null;
+	}
+
+	private void resize() {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new int[oldKeys.length * 2];
+		this.values = new Object[oldValues.length * 2];
+		this.mask = this.keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int index = hash(oldKeys[i]) & this.mask;
+				while (this.values[index] != null) {
+					index = (index + 1) & this.mask;
+				}
+				this.keys[index] = oldKeys[i];
+				this.values[index] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.inventivetalent.animatedframes.util;
+
+/**
+ * Open addressing hash map with primitive long keys, to avoid boxing in lookups.
+ * Not thread-safe, but safe to read concurrently once it is no longer modified.
+ */
+public class LongObjectMap<V> {
+
+	private long[]   keys;
+	private Object[] values;
+	private int      size;
+	private int      mask;
+
+	public LongObjectMap() {
+		this(16);
+	}
+
+	public LongObjectMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index = hash(key) & this.mask;
+		Object value;
+		while ((value = this.values[index]) != null) {
+			if (this.keys[index] == key) {
+				return (V) value;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) { throw new IllegalArgumentException("value cannot be null"); }
+		int index = hash(key) & this.mask;
+		Object existing;
+		while ((existing = this.values[index]) != null) {
+			if (this.keys[index] == key) {
+				this.values[index] = value;
+				return (V) existing;
+			}
+			index = (index + 1) & this.mask;
+		}
+		this.keys[index] = key;
+		this.values[index] = value;
+		if (++this.size * 2 > this.keys.length) {
+			resize();
+		}
+		return null;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private void resize() {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new long[oldKeys.length * 2];
+		this.values = new Object[oldValues.length * 2];
+		this.mask = this.keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int index = hash(oldKeys[i]) & this.mask;
+				while (this.values[index] != null) {
+					index = (index + 1) & this.mask;
+				}
+				this.keys[index] = oldKeys[i];
+				this.values[index] = oldValues[i];
+			}
+		}
+	}
+
+}
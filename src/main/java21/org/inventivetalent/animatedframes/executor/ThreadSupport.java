@@ -0,0 +1,27 @@
+package org.inventivetalent.animatedframes.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 implementation, see src/main/java for the default version
+ */
+public class ThreadSupport {
+
+	public static boolean isVirtualThreadSupported() {
+		return true;
+	}
+
+	/**
+	 * @param name    thread name prefix
+	 * @param virtual whether to use virtual threads, if supported
+	 * @return an executor which starts a new thread (or re-uses an idle one) for every task
+	 */
+	public static ExecutorService newTaskExecutor(String name, boolean virtual) {
+		if (virtual) {
+			return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + " #", 0).factory());
+		}
+		return Executors.newCachedThreadPool(new NamedThreadFactory(name));
+	}
+
+}